@@ -0,0 +1,23 @@
+import java.awt.Color;
+
+/**
+ * {@link blocky.bench.BenchBoard} adapter for {@link ArrayGame}, on the same
+ * seeded boards as {@link GameBenchBoard}.
+ *
+ * @author Daniel Xu
+ */
+public class ArrayGameBenchBoard extends GameBenchBoard {
+
+    @Override
+    protected IGame newGame(int depth, long seed) {
+        return new ArrayGame(depth, Color.RED, seed);
+    }
+
+    @Override
+    public Object smashLeaf() {
+        ArrayTree tree = new ArrayTree(Game.extentFor(this.maxDepth));
+        int leaf = tree.newNode(0, ArrayTree.NONE, 0, 0);
+        tree.smash(leaf, this.maxDepth);
+        return tree;
+    }
+}
@@ -0,0 +1,120 @@
+import java.awt.Color;
+import blocky.bench.BenchBoard;
+
+/**
+ * {@link BenchBoard} adapter for {@link Game}. The board comes from the
+ * seeded random_init(seed), so each trial measures the same board.
+ *
+ * @author Daniel Xu
+ */
+public class GameBenchBoard implements BenchBoard {
+
+    protected IGame game;
+    protected int maxDepth;
+
+    @Override
+    public void init(int depth, long seed) {
+        this.maxDepth = depth;
+        this.game = this.newGame(depth, seed);
+    }
+
+    /*
+     * This creates the game under test on the board of seed
+     *
+     * @param depth
+     * @param seed
+     * @return IGame
+     */
+    protected IGame newGame(int depth, long seed) {
+        return new Game(depth, Color.RED, seed);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        while (this.hasBlock(size)) {
+            size++;
+        }
+        return size;
+    }
+
+    private boolean hasBlock(int id) {
+        try {
+            return this.game.getBlock(id) != null;
+        }
+        catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int depthOf(int id) {
+        return this.game.getBlock(id).depth();
+    }
+
+    @Override
+    public Object randomInit() {
+        return this.game.random_init();
+    }
+
+    @Override
+    public Object getBlock(int id) {
+        return this.game.getBlock(id);
+    }
+
+    @Override
+    public void swap(int x, int y) {
+        this.game.swap(x, y);
+    }
+
+    @Override
+    public void rotate(int id) {
+        this.game.getBlock(id).rotate();
+    }
+
+    @Override
+    public Object smashLeaf() {
+        int extent = this.game.getRoot().getBotRight().getX();
+        Block leaf = new Block(new Point(0, 0), new Point(extent, extent), 0, null);
+        leaf.smash(this.maxDepth);
+        return leaf;
+    }
+
+    @Override
+    public Object flatten() {
+        return this.game.flatten();
+    }
+
+    @Override
+    public Object flattenFull() {
+        if (this.game instanceof Game) {
+            ((Game) this.game).setGrid(null);
+        }
+        return this.game.flatten();
+    }
+
+    @Override
+    public Object flattenParallel() {
+        if (!(this.game instanceof Game)) {
+            return this.flattenFull();
+        }
+        Game g = (Game) this.game;
+        g.setParallelFlatten(true);
+        try {
+            return this.flattenFull();
+        }
+        finally {
+            g.setParallelFlatten(false);
+        }
+    }
+
+    @Override
+    public int perimeterScore() {
+        return this.game.perimeter_score();
+    }
+
+    @Override
+    public int blobScore() {
+        return this.game.blob_score();
+    }
+}
@@ -0,0 +1,93 @@
+package blocky.bench;
+
+/**
+ * The board operations measured by {@link BoardBenchmark}.
+ *
+ * JMH cannot generate code for benchmarks in the default package, and code
+ * in a named package cannot refer to the engine classes (which live in the
+ * default package). Adapters in the default package implement this
+ * interface and the benchmark loads them by name once per trial, so every
+ * measured call is a plain, monomorphic interface call.
+ *
+ * @author Daniel Xu
+ */
+public interface BenchBoard {
+
+    /**
+     * builds the board that every benchmark of a trial works on
+     *
+     * @param maxDepth the max depth of the board
+     * @param seed the seed of the board layout and colors
+     */
+    void init(int maxDepth, long seed);
+
+    /**
+     * @return the number of blocks on the board
+     */
+    int size();
+
+    /**
+     * @param id the BFS id of a block
+     * @return the depth of that block
+     */
+    int depthOf(int id);
+
+    /**
+     * @return the new root after IGame.random_init()
+     */
+    Object randomInit();
+
+    /**
+     * @param id the BFS id of a block
+     * @return IGame.getBlock(id)
+     */
+    Object getBlock(int id);
+
+    /**
+     * IGame.swap(x, y)
+     *
+     * @param x the block to swap
+     * @param y the other block to swap
+     */
+    void swap(int x, int y);
+
+    /**
+     * IBlock.rotate() on the block with BFS id id
+     *
+     * @param id the BFS id of a block
+     */
+    void rotate(int id);
+
+    /**
+     * IBlock.smash(maxDepth) on a new leaf the size of the board
+     *
+     * @return the smashed block
+     */
+    Object smashLeaf();
+
+    /**
+     * @return IGame.flatten()
+     */
+    Object flatten();
+
+    /**
+     * @return IGame.flatten() with any cached grid thrown away first
+     */
+    Object flattenFull();
+
+    /**
+     * @return flattenFull() with the parallel flatten on, where the
+     *         implementation has one
+     */
+    Object flattenParallel();
+
+    /**
+     * @return IGame.perimeter_score()
+     */
+    int perimeterScore();
+
+    /**
+     * @return IGame.blob_score()
+     */
+    int blobScore();
+}
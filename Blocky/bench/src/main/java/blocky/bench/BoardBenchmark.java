@@ -0,0 +1,155 @@
+package blocky.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the core board operations on seeded boards of max depth
+ * 2 to 12. Run with <code>-prof gc</code> to get the allocation rate
+ * (gc.alloc.rate.norm is bytes per operation) next to the throughput.
+ *
+ * <code>impl</code> picks the engine: GameBenchBoard (Block/Game) or
+ * ArrayGameBenchBoard (ArrayBlock/ArrayGame).
+ *
+ * @author Daniel Xu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    private static final int MOVES = 1024;
+
+    @Param({ "2", "3", "4", "6", "8", "10", "12" })
+    public int maxDepth;
+
+    @Param({ "42" })
+    public long seed;
+
+    @Param({ "GameBenchBoard", "ArrayGameBenchBoard" })
+    public String impl;
+
+    private BenchBoard board;
+    private int[] ids;
+    private int[] swapPairs;
+    private int next;
+
+    /*
+     * This builds the seeded board and the seeded ids every benchmark
+     * cycles through
+     */
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        this.board = (BenchBoard) Class.forName(this.impl)
+            .getDeclaredConstructor().newInstance();
+        this.board.init(this.maxDepth, this.seed);
+
+        SplittableRandom rand = new SplittableRandom(this.seed);
+        int size = this.board.size();
+        this.ids = new int[MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            this.ids[i] = rand.nextInt(size);
+        }
+
+        //Swapping never changes how many blocks each level has, so pairs
+        //that are at the same depth now stay valid for every call
+        this.swapPairs = new int[2 * MOVES];
+        for (int i = 0; i < MOVES; i++) {
+            int x = 1 + rand.nextInt(size - 1);
+            int y = 1 + rand.nextInt(size - 1);
+            while (this.board.depthOf(y) != this.board.depthOf(x)) {
+                y = 1 + rand.nextInt(size - 1);
+            }
+            this.swapPairs[2 * i] = x;
+            this.swapPairs[2 * i + 1] = y;
+        }
+    }
+
+    private int nextMove() {
+        this.next = (this.next + 1) & (MOVES - 1);
+        return this.next;
+    }
+
+    @Benchmark
+    public Object randomInit() {
+        return this.board.randomInit();
+    }
+
+    @Benchmark
+    public Object getBlock() {
+        return this.board.getBlock(this.ids[this.nextMove()]);
+    }
+
+    @Benchmark
+    public void swap() {
+        int i = this.nextMove();
+        this.board.swap(this.swapPairs[2 * i], this.swapPairs[2 * i + 1]);
+    }
+
+    @Benchmark
+    public void rotateRoot() {
+        this.board.rotate(0);
+    }
+
+    @Benchmark
+    public Object smash() {
+        return this.board.smashLeaf();
+    }
+
+    @Benchmark
+    public Object flattenFull() {
+        return this.board.flattenFull();
+    }
+
+    @Benchmark
+    public Object flattenParallel() {
+        return this.board.flattenParallel();
+    }
+
+    /*
+     * A move followed by a flatten, the pattern of every turn in TestBlockly
+     */
+    @Benchmark
+    public Object swapThenFlatten() {
+        this.swap();
+        return this.board.flatten();
+    }
+
+    /*
+     * A move followed by a score, the pattern of every turn in TestBlockly
+     */
+    @Benchmark
+    public int swapThenPerimeterScore() {
+        this.swap();
+        return this.board.perimeterScore();
+    }
+
+    @Benchmark
+    public int perimeterScore() {
+        return this.board.perimeterScore();
+    }
+
+    /*
+     * A move followed by a blob score, which only joins the regions the
+     * move touched again
+     */
+    @Benchmark
+    public int swapThenBlobScore() {
+        this.swap();
+        return this.board.blobScore();
+    }
+}
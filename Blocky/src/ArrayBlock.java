@@ -0,0 +1,239 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A lightweight IBlock view of one node of an {@link ArrayTree}. The view
+ * only holds the tree and the node handle, so it can be created on demand
+ * and thrown away; two views of the same node are equal.
+ *
+ * @author Daniel Xu
+ */
+public class ArrayBlock implements IBlock {
+
+    private final ArrayTree tree;
+    private final int node;
+
+    /*
+     * This constructs a view of node in tree
+     *
+     * @param tree
+     * @param node
+     */
+    ArrayBlock(ArrayTree tree, int node) {
+        this.tree = tree;
+        this.node = node;
+    }
+
+    /*
+     * This returns the handle of the node behind this view
+     *
+     * @return node
+     */
+    int node() {
+        return this.node;
+    }
+
+    /*
+     * This returns the tree that stores this block
+     *
+     * @return tree
+     */
+    ArrayTree tree() {
+        return this.tree;
+    }
+
+    @Override
+    public int depth() {
+        return this.tree.depth(this.node);
+    }
+
+    @Override
+    public void smash(int maxDepth) {
+        this.tree.smash(this.node, maxDepth);
+    }
+
+    @Override
+    public void smash(int maxDepth, SplittableRandom random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random must not be null");
+        }
+        this.tree.smash(this.node, maxDepth, random);
+    }
+
+    /*
+     * This returns new views of the four sub blocks in clockwise order,
+     * or an empty list for a leaf
+     *
+     * @return blockList
+     */
+    @Override
+    public List<IBlock> children() {
+        List<IBlock> blockList = new ArrayList<>(4);
+        for (int q = 0; q < 4; q++) {
+            IBlock sub = this.subBlock(q);
+            if (sub != null) {
+                blockList.add(sub);
+            }
+        }
+        return blockList;
+    }
+
+    @Override
+    public void rotate() {
+        this.tree.rotate(this.node);
+    }
+
+    @Override
+    public Color getColor() {
+        int index = this.tree.color(this.node);
+        return index == ArrayTree.NO_COLOR ? null : COLORS[index];
+    }
+
+    /*
+     * This sets the color of this block. Only colors of the palette
+     * (or null) can be stored.
+     *
+     * @param c
+     */
+    @Override
+    public void setColor(Color c) {
+        this.tree.setColor(this.node, ArrayTree.paletteIndex(c));
+    }
+
+    @Override
+    public Point getTopLeft() {
+        return new Point(this.tree.x(this.node), this.tree.y(this.node));
+    }
+
+    @Override
+    public Point getBotRight() {
+        int side = this.tree.sideLength(this.node);
+        return new Point(this.tree.x(this.node) + side,
+            this.tree.y(this.node) + side);
+    }
+
+    @Override
+    public boolean isleaf() {
+        return this.tree.isLeaf(this.node);
+    }
+
+    @Override
+    public IBlock getChild(int i) {
+        return i < 0 || i > 3 ? null : this.subBlock(i);
+    }
+
+    @Override
+    public IBlock getTopLeftTree() {
+        return this.subBlock(0);
+    }
+
+    @Override
+    public IBlock getTopRightTree() {
+        return this.subBlock(1);
+    }
+
+    @Override
+    public IBlock getBotLeftTree() {
+        return this.subBlock(3);
+    }
+
+    @Override
+    public IBlock getBotRightTree() {
+        return this.subBlock(2);
+    }
+
+    @Override
+    public void setTopLeftTree(IBlock block) {
+        this.link(0, block);
+    }
+
+    @Override
+    public void setTopRightTree(IBlock block) {
+        this.link(1, block);
+    }
+
+    @Override
+    public void setBotLeftTree(IBlock block) {
+        this.link(3, block);
+    }
+
+    @Override
+    public void setBotRightTree(IBlock block) {
+        this.link(2, block);
+    }
+
+    /*
+     * The bounds of an array block are implied by its position in the
+     * tree, so there is nothing to set.
+     *
+     * @param topLeft
+     */
+    @Override
+    public void setTopLeft(Point topLeft) {
+        // geometry is derived from the quadrant path
+    }
+
+    /*
+     * The bounds of an array block are implied by its position in the
+     * tree, so there is nothing to set.
+     *
+     * @param botRight
+     */
+    @Override
+    public void setBotRight(Point botRight) {
+        // geometry is derived from the quadrant path
+    }
+
+    /*
+     * Two views are equal when they point at the same node of the same tree
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof ArrayBlock) {
+            ArrayBlock other = (ArrayBlock) o;
+            return this.tree == other.tree && this.node == other.node;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(this.tree) + this.node;
+    }
+
+    /*
+     * This returns a view of the sub block in slot q, null if there is none
+     *
+     * @param q
+     * @return IBlock
+     */
+    private IBlock subBlock(int q) {
+        int c = this.tree.child(this.node, q);
+        return c == ArrayTree.NONE ? null : this.tree.view(c);
+    }
+
+    /*
+     * This puts block into slot q. A block of the same tree is relinked,
+     * any other IBlock is copied into the tree below this node.
+     *
+     * @param q
+     * @param block
+     */
+    private void link(int q, IBlock block) {
+        if (block == null) {
+            this.tree.setChild(this.node, q, ArrayTree.NONE);
+        }
+        else if (block instanceof ArrayBlock
+            && ((ArrayBlock) block).tree == this.tree) {
+            this.tree.setChild(this.node, q, ((ArrayBlock) block).node);
+        }
+        else {
+            int copy = this.tree.copyOf(block, this.depth() + 1, this.node, q);
+            this.tree.setChild(this.node, q, copy);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * An IGame that keeps the whole board in an {@link ArrayTree}. Blocks are
+ * int handles into parallel primitive arrays instead of one heap object
+ * (plus two Points) per node, and traversals never chase object pointers.
+ * The blocks handed out through the IGame interface are {@link ArrayBlock}
+ * views over those handles.
+ *
+ * @author Daniel Xu
+ */
+public class ArrayGame implements IGame {
+
+    private int max_depth;
+    private Color target;
+    private ArrayTree tree;
+    private int root = ArrayTree.NONE;
+
+    /*
+     * This constructs the game with max_depth and the color that will be
+     * used to count the points
+     *
+     * @param maxDepth
+     * @param target
+     */
+    ArrayGame(int maxDepth, Color target) {
+        this.max_depth = maxDepth;
+        this.target = target;
+        this.random_init();
+    }
+
+    /*
+     * This constructs the game on the board random_init(seed) generates
+     *
+     * @param maxDepth
+     * @param target
+     * @param seed
+     */
+    ArrayGame(int maxDepth, Color target, long seed) {
+        this.max_depth = maxDepth;
+        this.target = target;
+        this.random_init(seed);
+    }
+
+    @Override
+    public int max_depth() {
+        return this.max_depth;
+    }
+
+    /*
+     * Same process as Game.random_init(): keep smashing a random existing
+     * block until one of the new blocks reaches max_depth. Picking a random
+     * handle is O(1) here, Game has to walk the tree for every pick.
+     *
+     * @return root
+     */
+    @Override
+    public IBlock random_init() {
+        return this.generate(new SplittableRandom());
+    }
+
+    /*
+     * Same as Game.random_init(seed): the same seed always gives the
+     * same board
+     *
+     * @param seed
+     * @return root
+     */
+    public IBlock random_init(long seed) {
+        return this.generate(new SplittableRandom(seed));
+    }
+
+    private IBlock generate(SplittableRandom rand) {
+        this.tree = new ArrayTree(Game.extentFor(this.max_depth), rand);
+        this.root = this.tree.newNode(0, ArrayTree.NONE, 0, ArrayTree.NO_COLOR);
+        this.tree.smash(this.root, this.max_depth);
+        if (this.tree.isLeaf(this.root)) {
+            this.tree.setColor(this.root, this.tree.randomNode(IBlock.COLORS.length));
+        }
+
+        int checkDepth = 1;
+        while (checkDepth < this.max_depth) {
+            int pick = this.tree.randomNode(this.tree.size());
+            if (pick == this.root) {
+                continue;
+            }
+            if (this.tree.depth(pick) < this.max_depth && this.tree.isLeaf(pick)) {
+                this.tree.smash(pick, this.max_depth);
+                checkDepth = this.tree.depth(pick) + 1;
+            }
+        }
+        return this.getRoot();
+    }
+
+    /*
+     * This looks up the block with id pos in the tree's id index (see
+     * ArrayIndex) in O(depth), null if the board has fewer blocks
+     *
+     * @param pos
+     * @return IBlock
+     */
+    @Override
+    public IBlock getBlock(int pos) {
+        int n = this.find(pos);
+        return n == ArrayTree.NONE ? null : this.tree.view(n);
+    }
+
+    @Override
+    public IBlock getRoot() {
+        return this.root == ArrayTree.NONE ? null : this.tree.view(this.root);
+    }
+
+    /*
+     * This swaps the blocks with ids x and y if they are at the same depth.
+     * Only the two parent slots change, no sub block is touched.
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void swap(int x, int y) {
+        int a = this.find(x);
+        int b = this.find(y);
+        if (a == ArrayTree.NONE || b == ArrayTree.NONE || a == this.root
+            || b == this.root) {
+            return;
+        }
+        if (this.tree.depth(a) == this.tree.depth(b)) {
+            this.tree.swap(a, b);
+        }
+    }
+
+    /*
+     * Same as Game.apply(): every move leaves its inverse on a stack, which
+     * is run back when a move is invalid or the batch fails otherwise
+     *
+     * @param moves
+     */
+    @Override
+    public void apply(List<Move> moves) {
+        Deque<Runnable> undo = new ArrayDeque<>();
+        try {
+            for (Move move : moves) {
+                undo.push(this.applyMove(move));
+            }
+        }
+        catch (RuntimeException e) {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * This makes one move of a batch and returns what undoes it
+     *
+     * @param move
+     * @return inverse
+     */
+    private Runnable applyMove(Move move) {
+        int n = this.moveTarget(move.getX(), move);
+        switch (move.getKind()) {
+            case SWAP:
+                int other = this.moveTarget(move.getY(), move);
+                if (n == this.root || other == this.root
+                    || this.tree.depth(n) != this.tree.depth(other)) {
+                    throw new IllegalArgumentException("Invalid move: " + move);
+                }
+                this.tree.swap(n, other);
+                return () -> this.tree.swap(n, other);
+            case ROTATE:
+                this.tree.rotate(n);
+                return () -> {
+                    this.tree.rotate(n);
+                    this.tree.rotate(n);
+                    this.tree.rotate(n);
+                };
+            default:
+                if (!this.tree.isLeaf(n) || this.tree.depth(n) >= this.max_depth) {
+                    throw new IllegalArgumentException("Invalid move: " + move);
+                }
+                int before = this.tree.color(n);
+                this.tree.smash(n, this.max_depth,
+                    new SplittableRandom(move.getSeed()));
+                return () -> this.tree.unsmash(n, before);
+        }
+    }
+
+    /*
+     * This returns the handle of the block with id pos for move
+     *
+     * @param pos
+     * @param move
+     * @return handle
+     */
+    private int moveTarget(int pos, Move move) {
+        int n = this.find(pos);
+        if (n == ArrayTree.NONE) {
+            throw new IllegalArgumentException("Invalid move: " + move
+                + ", no block with id " + pos);
+        }
+        return n;
+    }
+
+    /*
+     * This builds the 2^max_depth by 2^max_depth grid of leaves with a
+     * top-down walk that carries the bounds of every node along, so no
+     * coordinate is ever computed twice.
+     *
+     * @return grid
+     */
+    @Override
+    public IBlock[][] flatten() {
+        int gridSize = 1 << this.max_depth;
+        IBlock[][] grid = new IBlock[gridSize][gridSize];
+        if (this.root != ArrayTree.NONE) {
+            this.paint(grid, this.root, 0, 0, gridSize);
+        }
+        return grid;
+    }
+
+    /*
+     * This scores the perimeter without a grid: only nodes that touch an
+     * edge of the board are visited, and each leaf on an edge adds one point
+     * per unit cell it covers along that edge.
+     *
+     * @return gamePoints
+     */
+    @Override
+    public int perimeter_score() {
+        if (this.root == ArrayTree.NONE) {
+            return 0;
+        }
+        int targetIndex = ArrayTree.paletteIndex(this.target);
+        return this.edgePoints(this.root, 0, 0, this.tree.extent(),
+            targetIndex, this.unitSize());
+    }
+
+    /*
+     * This returns the side of one unit cell of the board
+     *
+     * @throws IllegalStateException if the root is smaller than
+     *         2^max_depth, a cell would then have no size
+     */
+    private int unitSize() {
+        int unitS = this.tree.extent() >> this.max_depth;
+        if (unitS == 0) {
+            throw new IllegalStateException("A root of size " + this.tree.extent()
+                + " is too small for a board of max depth " + this.max_depth);
+        }
+        return unitS;
+    }
+
+    /*
+     * This scores the largest blob of the target color with a union-find
+     * over a new flatten() grid
+     *
+     * @return score
+     */
+    @Override
+    public int blob_score() {
+        return BlobScorer.score(this.flatten(), this.target);
+    }
+
+    /*
+     * This sets the root of the game. Blocks of another implementation are
+     * copied into a fresh array tree.
+     *
+     * @param root
+     */
+    @Override
+    public void setRoot(IBlock root) {
+        if (root == null) {
+            this.root = ArrayTree.NONE;
+        }
+        else if (root instanceof ArrayBlock
+            && ((ArrayBlock) root).tree().parent(((ArrayBlock) root).node())
+                == ArrayTree.NONE) {
+            this.tree = ((ArrayBlock) root).tree();
+            this.root = ((ArrayBlock) root).node();
+        }
+        else {
+            int extent = root.getBotRight().getX() - root.getTopLeft().getX();
+            this.tree = new ArrayTree(extent);
+            this.root = this.tree.copyOf(root, 0, ArrayTree.NONE, 0);
+        }
+    }
+
+    public void setMaxDepth(int depth) {
+        this.max_depth = depth;
+    }
+
+    public int getMaxDepth() {
+        return this.max_depth;
+    }
+
+    public Color getTarget() {
+        return this.target;
+    }
+
+    /*
+     * This returns the handle of the block with BFS id pos
+     *
+     * @param pos
+     * @return handle or NONE
+     */
+    private int find(int pos) {
+        if (this.root == ArrayTree.NONE || pos < 0) {
+            return ArrayTree.NONE;
+        }
+        return this.tree.find(this.root, pos);
+    }
+
+    /*
+     * This fills the cells covered by node n, whose top left cell is
+     * (row, col) and which spans cells cells per side
+     */
+    private void paint(IBlock[][] grid, int n, int row, int col, int cells) {
+        if (this.tree.isLeaf(n)) {
+            IBlock leaf = this.tree.view(n);
+            for (int i = row; i < row + cells; i++) {
+                Arrays.fill(grid[i], col, col + cells, leaf);
+            }
+            return;
+        }
+        int half = cells / 2;
+        for (int q = 0; q < 4; q++) {
+            int c = this.tree.child(n, q);
+            if (c != ArrayTree.NONE) {
+                int subRow = (q == 2 || q == 3) ? row + half : row;
+                int subCol = (q == 1 || q == 2) ? col + half : col;
+                this.paint(grid, c, subRow, subCol, half);
+            }
+        }
+    }
+
+    /*
+     * This adds up the perimeter points of node n at (x, y) with side size
+     */
+    private int edgePoints(int n, int x, int y, int size, int targetIndex,
+        int unitS) {
+        int extent = this.tree.extent();
+        if (this.tree.isLeaf(n)) {
+            if (this.tree.color(n) != targetIndex) {
+                return 0;
+            }
+            int edges = 0;
+            if (y == 0) {
+                edges++;
+            }
+            if (y + size == extent) {
+                edges++;
+            }
+            if (x == 0) {
+                edges++;
+            }
+            if (x + size == extent) {
+                edges++;
+            }
+            return edges * (size / unitS);
+        }
+        int half = size / 2;
+        int points = 0;
+        for (int q = 0; q < 4; q++) {
+            int c = this.tree.child(n, q);
+            if (c == ArrayTree.NONE) {
+                continue;
+            }
+            int subX = (q == 1 || q == 2) ? x + half : x;
+            int subY = (q == 2 || q == 3) ? y + half : y;
+            if (subX == 0 || subY == 0 || subX + half == extent
+                || subY + half == extent) {
+                points += this.edgePoints(c, subX, subY, half, targetIndex,
+                    unitS);
+            }
+        }
+        return points;
+    }
+}
@@ -0,0 +1,226 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class ArrayGameTest {
+
+    /*
+     * This checks that a smash on an array block behaves like Block.smash():
+     * the parent stops being a leaf and gets four leaf children one level
+     * deeper
+     */
+    @Test
+    public void smash() {
+        ArrayGame game = new ArrayGame(0, Color.red);
+        IBlock root = game.getRoot();
+        assertTrue(root.isleaf());
+
+        root.smash(3);
+
+        assertFalse(root.isleaf());
+        assertNull(root.getColor());
+        assertEquals(4, root.children().size());
+        assertEquals(1, root.getTopLeftTree().depth());
+        assertTrue(root.getBotLeftTree().isleaf());
+    }
+
+    /*
+     * This checks that bounds derived from the quadrant path follow a
+     * rotation the same way Block.updateXY() does
+     */
+    @Test
+    public void rotate() {
+        ArrayGame game = new ArrayGame(0, Color.red);
+        IBlock root = game.getRoot();
+        root.smash(3);
+        IBlock botRight = root.getBotRightTree();
+        botRight.smash(3);
+        IBlock smashedChild = botRight.getTopLeftTree();
+        root.rotate();
+
+        //The smashed block moved from the bottom right to the bottom left
+        assertEquals(botRight, root.getBotLeftTree());
+        assertEquals(0, root.getBotLeftTree().getTopLeft().getX());
+        assertEquals(4, root.getBotLeftTree().getTopLeft().getY());
+        assertEquals(0, smashedChild.getTopLeft().getX());
+        assertEquals(4, smashedChild.getTopLeft().getY());
+        assertEquals(2, smashedChild.getBotRight().getX());
+        assertEquals(6, smashedChild.getBotRight().getY());
+    }
+
+    /*
+     * Same board as GameTest.swapFlattenPerimeter(), built from Blocks and
+     * copied into the array tree through setRoot()
+     */
+    @Test
+    public void swapFlattenPerimeter() {
+        ArrayGame game = new ArrayGame(1, Color.red);
+
+        Block root = new Block(new Point(0, 0), new Point(8, 8), 0, null);
+        Block northWest = new Block(new Point(0, 0), new Point(4, 4), 1, root);
+        northWest.setColor(Color.red);
+        Block northEast = new Block(new Point(4, 0), new Point(8, 4), 1, root);
+        northEast.setColor(Color.blue);
+        Block southEast = new Block(new Point(4, 4), new Point(8, 8), 1, root);
+        southEast.setColor(Color.white);
+        Block southWest = new Block(new Point(0, 4), new Point(4, 8), 1, root);
+        southWest.setColor(Color.cyan);
+        root.setTopLeftTree(northWest);
+        root.setTopRightTree(northEast);
+        root.setBotRightTree(southEast);
+        root.setBotLeftTree(southWest);
+        game.setRoot(root);
+
+        game.swap(1, 2);
+        game.swap(3, 4);
+
+        IBlock newRoot = game.getRoot();
+        assertEquals(Color.blue, newRoot.getTopLeftTree().getColor());
+        assertEquals(Color.red, newRoot.getTopRightTree().getColor());
+        assertEquals(Color.cyan, newRoot.getBotRightTree().getColor());
+        assertEquals(Color.white, newRoot.getBotLeftTree().getColor());
+
+        IBlock[][] grid = game.flatten();
+        assertEquals(newRoot.getTopLeftTree(), grid[0][0]);
+        assertEquals(newRoot.getTopRightTree(), grid[0][1]);
+        assertEquals(newRoot.getBotLeftTree(), grid[1][0]);
+        assertEquals(newRoot.getBotRightTree(), grid[1][1]);
+
+        assertEquals(2, game.perimeter_score());
+
+        game.setMaxDepth(4);
+        try {
+            game.perimeter_score();
+            fail();
+        }
+        catch (IllegalStateException e) {
+            //a root of size 8 has no unit cells at depth 4
+        }
+    }
+
+    /*
+     * This checks that a random board reaches max_depth and that the grid
+     * and the grid-free perimeter score agree with a Game over the same tree
+     */
+    @Test
+    public void matchesGame() {
+        ArrayGame game = new ArrayGame(3, Color.red);
+        IBlock[][] grid = game.flatten();
+        assertEquals(8, grid.length);
+
+        Game reference = new Game(3, Color.red);
+        reference.setRoot(Block.copyOf(game.getRoot()));
+        assertEquals(reference.perimeter_score(), game.perimeter_score());
+        IBlock[][] referenceGrid = reference.getGrid();
+        for (int i = 0; i < grid.length; i++) {
+            for (int j = 0; j < grid.length; j++) {
+                assertEquals(referenceGrid[i][j].getColor(),
+                    grid[i][j].getColor());
+            }
+        }
+    }
+
+    /*
+     * This checks that a batch on an array game makes the same moves as
+     * on a Game over the same tree, smash colors included, and that an
+     * invalid batch is rolled back
+     */
+    @Test
+    public void applyBatch() {
+        ArrayGame game = new ArrayGame(3, Color.red, 4L);
+        Game reference = new Game(3, Color.red);
+        reference.setRoot(Block.copyOf(game.getRoot()));
+
+        List<Move> moves = List.of(Move.rotate(0), Move.swap(1, 4));
+        game.apply(moves);
+        reference.apply(moves);
+        int leaf = 1;
+        while (!game.getBlock(leaf).isleaf() || game.getBlock(leaf).depth() == 3) {
+            leaf++;
+        }
+        moves = List.of(Move.smash(leaf, 8L), Move.rotate(leaf));
+        game.apply(moves);
+        reference.apply(moves);
+        assertSameGrid(reference.flatten(), game.flatten());
+        assertEquals(reference.perimeter_score(), game.perimeter_score());
+
+        IBlock[][] before = game.flatten();
+        try {
+            game.apply(List.of(Move.rotate(0), Move.swap(1, 5)));
+            fail("blocks of different depths cannot be swapped");
+        }
+        catch (IllegalArgumentException e) {
+            //expected
+        }
+        assertSameGrid(before, game.flatten());
+    }
+
+    /*
+     * This checks the id index against a BFS after many random moves,
+     * undone batches and a sub block set by hand included
+     */
+    @Test
+    public void getBlockFollowsRandomMoves() {
+        ArrayGame game = new ArrayGame(5, Color.red, 21L);
+        Game reference = new Game(5, Color.red);
+        reference.setRoot(Block.copyOf(game.getRoot()));
+        SplittableRandom rand = new SplittableRandom(21);
+        for (int i = 0; i < 300; i++) {
+            List<Move> moves = List.of(reference.snapshot().randomMove(rand));
+            if (i % 10 == 0) {
+                moves = List.of(moves.get(0), Move.rotate(-1));
+            }
+            for (IGame g : List.<IGame>of(game, reference)) {
+                try {
+                    g.apply(moves);
+                }
+                catch (IllegalArgumentException e) {
+                    //the move is undone
+                }
+            }
+            if (i % 7 == 0) {
+                assertBfsOrder(game);
+            }
+        }
+        assertBfsOrder(game);
+        assertSameGrid(reference.flatten(), game.flatten());
+
+        IBlock first = game.getBlock(1);
+        game.getRoot().setTopLeftTree(game.getBlock(2));
+        game.getRoot().setTopRightTree(first);
+        assertBfsOrder(game);
+    }
+
+    private static void assertBfsOrder(ArrayGame game) {
+        List<IBlock> expected = new ArrayList<>();
+        ArrayDeque<IBlock> queue = new ArrayDeque<>();
+        queue.offer(game.getRoot());
+        while (!queue.isEmpty()) {
+            IBlock block = queue.poll();
+            expected.add(block);
+            queue.addAll(block.children());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), game.getBlock(i));
+        }
+        assertNull(game.getBlock(expected.size()));
+    }
+
+    private static void assertSameGrid(IBlock[][] expected, IBlock[][] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[i][j].getColor(), actual[i][j].getColor());
+            }
+        }
+    }
+}
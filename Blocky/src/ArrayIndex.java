@@ -0,0 +1,412 @@
+import java.util.Arrays;
+
+/**
+ * The id -> handle index of an {@link ArrayTree}, the same scheme as
+ * {@link BlockIndex} over int handles. Ids are the BFS order of the tree, so
+ * the index keeps one handle array per level and where the children of each
+ * node start on the level below; the blocks under a node are one range of
+ * every lower level.
+ *
+ * The tree reports its moves and they are patched in place: a smash inserts
+ * four handles into one level (an unsmash removes them), a rotate rotates
+ * the ranges under the node and a swap trades the two ranges of the nodes,
+ * on every lower level. A lookup costs O(depth), a smash or swap O(size of
+ * the levels it touches). The whole index is built on the first lookup, and
+ * again after any change the tree cannot describe as one of those moves.
+ *
+ * @author Daniel Xu
+ */
+class ArrayIndex {
+
+    private final ArrayTree tree;
+    private int root = ArrayTree.NONE;
+    private boolean built;
+
+    //levels[l][0, sizes[l]) are the handles of level l in BFS order
+    private int[][] levels = new int[0][];
+    private int[] sizes = new int[0];
+    //childStart[l][i] is the position on level l + 1 of the first child of
+    //node i of level l, childStart[l][sizes[l]] the size of level l + 1
+    private int[][] childStart = new int[0][];
+    private int[] levelStart = new int[0];
+    private int count;
+
+    /*
+     * This constructs an empty index of tree
+     *
+     * @param tree
+     */
+    ArrayIndex(ArrayTree tree) {
+        this.tree = tree;
+    }
+
+    /*
+     * This drops the index, the next lookup builds it again
+     */
+    void reset() {
+        this.built = false;
+    }
+
+    /*
+     * This returns the handle with BFS id pos in the tree under root
+     *
+     * @param root
+     * @param pos
+     * @return handle or NONE
+     */
+    int find(int root, int pos) {
+        if (root != this.root || !this.built) {
+            this.root = root;
+            this.build();
+        }
+        for (int level = this.count - 1; level >= 0; level--) {
+            if (pos >= this.levelStart[level]) {
+                int i = pos - this.levelStart[level];
+                return i < this.sizes[level] ? this.levels[level][i] : ArrayTree.NONE;
+            }
+        }
+        return ArrayTree.NONE;
+    }
+
+    /*
+     * This inserts the four new children of n into the level below it
+     *
+     * @param n
+     */
+    void smashed(int n) {
+        int pos = this.positionOf(n);
+        if (pos < 0) {
+            return;
+        }
+        int level = this.levelOf(n);
+        int at = this.childStart[level][pos];
+        if (at != this.childStart[level][pos + 1]) {
+            this.built = false;
+            return;
+        }
+        if (level + 1 == this.count) {
+            this.addLevel();
+        }
+        int[] children = new int[4];
+        for (int q = 0; q < 4; q++) {
+            children[q] = this.tree.child(n, q);
+        }
+        this.insert(level + 1, at, children);
+        this.shift(level, pos + 1, 4);
+        //The new leaves have no children, they start where the node at did
+        int[] starts = this.childStart[level + 1];
+        int[] grown = new int[this.sizes[level + 1] + 1];
+        System.arraycopy(starts, 0, grown, 0, at + 1);
+        Arrays.fill(grown, at + 1, at + 5, starts[at]);
+        System.arraycopy(starts, at + 1, grown, at + 5, grown.length - at - 5);
+        this.childStart[level + 1] = grown;
+        this.startLevels();
+    }
+
+    /*
+     * This removes the children of n, which were leaves, before the tree
+     * unlinks them
+     *
+     * @param n
+     */
+    void unsmashing(int n) {
+        int pos = this.positionOf(n);
+        if (pos < 0) {
+            return;
+        }
+        int level = this.levelOf(n);
+        int from = this.childStart[level][pos];
+        int to = this.childStart[level][pos + 1];
+        if (from == to) {
+            return;
+        }
+        if (this.childStart[level + 1][from]
+            != this.childStart[level + 1][to]) {
+            this.built = false;
+            return;
+        }
+        int[] below = this.levels[level + 1];
+        System.arraycopy(below, to, below, from, this.sizes[level + 1] - to);
+        this.sizes[level + 1] -= to - from;
+        this.shift(level, pos + 1, from - to);
+        int[] starts = this.childStart[level + 1];
+        int[] shrunk = new int[this.sizes[level + 1] + 1];
+        System.arraycopy(starts, 0, shrunk, 0, from + 1);
+        System.arraycopy(starts, to + 1, shrunk, from + 1, shrunk.length - from - 1);
+        this.childStart[level + 1] = shrunk;
+        if (this.sizes[level + 1] == 0) {
+            this.count--;
+        }
+        this.startLevels();
+    }
+
+    /*
+     * A rotate of n moves the range under its last child to the front of
+     * the range under n, on every level below it
+     *
+     * @param n
+     */
+    void rotated(int n) {
+        int pos = this.positionOf(n);
+        if (pos < 0) {
+            return;
+        }
+        int top = this.levelOf(n);
+        int from = pos;
+        int to = pos + 1;
+        int lastFrom = pos;
+        int lastTo = pos + 1;
+        for (int level = top + 1; level < this.count; level++) {
+            int[] starts = this.childStart[level - 1];
+            if (level == top + 1) {
+                lastFrom = starts[to] - 1;
+                lastTo = starts[to];
+            }
+            else {
+                lastFrom = starts[lastFrom];
+                lastTo = starts[lastTo];
+            }
+            from = starts[from];
+            to = starts[to];
+            if (from == to) {
+                break;
+            }
+            rotate(this.levels[level], from, to, lastTo - lastFrom);
+        }
+        //The counts of children moved with the nodes
+        this.recount(top, pos, pos + 1);
+    }
+
+    /*
+     * This trades the places of a and b, two nodes of one level, and of the
+     * ranges under them on every lower level. It runs before the tree
+     * relinks them.
+     *
+     * @param a
+     * @param b
+     */
+    void swapping(int a, int b) {
+        int posA = this.positionOf(a);
+        int posB = this.positionOf(b);
+        if (posA < 0 || posB < 0 || posA == posB) {
+            return;
+        }
+        int top = this.levelOf(a);
+        //Ranges [firstFrom, firstTo) and [secondFrom, secondTo) on a level
+        int firstFrom = Math.min(posA, posB);
+        int firstTo = firstFrom + 1;
+        int secondFrom = Math.max(posA, posB);
+        int secondTo = secondFrom + 1;
+        int first = firstFrom;
+        int second = secondFrom;
+        for (int level = top; level < this.count; level++) {
+            if (level > top) {
+                int[] starts = this.childStart[level - 1];
+                firstFrom = starts[firstFrom];
+                firstTo = starts[firstTo];
+                secondFrom = starts[secondFrom];
+                secondTo = starts[secondTo];
+                if (firstFrom == firstTo && secondFrom == secondTo) {
+                    break;
+                }
+            }
+            int[] handles = this.levels[level];
+            //Reversing the span and then each part trades the outer parts
+            reverse(handles, firstFrom, secondTo);
+            int secondSize = secondTo - secondFrom;
+            int middleTo = secondTo - (firstTo - firstFrom);
+            reverse(handles, firstFrom, firstFrom + secondSize);
+            reverse(handles, firstFrom + secondSize, middleTo);
+            reverse(handles, middleTo, secondTo);
+        }
+        this.recount(top, first, second + 1);
+    }
+
+    /*
+     * This returns the position of n on its level, following the path from
+     * the root down, or -1 (and drops the index) if n is not indexed
+     */
+    private int positionOf(int n) {
+        if (!this.built) {
+            return -1;
+        }
+        int parent = this.tree.parent(n);
+        if (parent == ArrayTree.NONE) {
+            if (n == this.root) {
+                return 0;
+            }
+            this.built = false;
+            return -1;
+        }
+        int parentPos = this.positionOf(parent);
+        if (parentPos < 0) {
+            return -1;
+        }
+        int pos = this.childStart[this.levelOf(parent)][parentPos];
+        for (int q = 0; q < 4; q++) {
+            int c = this.tree.child(parent, q);
+            if (c == n) {
+                return pos;
+            }
+            if (c != ArrayTree.NONE) {
+                pos++;
+            }
+        }
+        this.built = false;
+        return -1;
+    }
+
+    private int levelOf(int n) {
+        return this.tree.depth(n) - this.tree.depth(this.root);
+    }
+
+    /*
+     * This recomputes the child starts of the nodes in [from, to) of level
+     * and of the ranges under them on every lower level, after their nodes
+     * were reordered. The start of the range and its end do not move.
+     */
+    private void recount(int level, int from, int to) {
+        for (; level < this.count - 1 && from < to; level++) {
+            int[] handles = this.levels[level];
+            int[] starts = this.childStart[level];
+            int next = starts[from];
+            int nextFrom = next;
+            for (int i = from; i < to; i++) {
+                starts[i] = next;
+                next += this.children(handles[i]);
+            }
+            from = nextFrom;
+            to = next;
+        }
+    }
+
+    /*
+     * This adds count to the child starts of level from node from on
+     */
+    private void shift(int level, int from, int count) {
+        int[] starts = this.childStart[level];
+        for (int i = from; i <= this.sizes[level]; i++) {
+            starts[i] += count;
+        }
+    }
+
+    /*
+     * This inserts handles into level at position at
+     */
+    private void insert(int level, int at, int[] handles) {
+        int size = this.sizes[level];
+        int[] old = this.levels[level];
+        if (size + handles.length > old.length) {
+            this.levels[level] = Arrays.copyOf(old,
+                Math.max(2 * old.length, size + handles.length));
+        }
+        int[] grown = this.levels[level];
+        System.arraycopy(grown, at, grown, at + handles.length, size - at);
+        System.arraycopy(handles, 0, grown, at, handles.length);
+        this.sizes[level] = size + handles.length;
+    }
+
+    /*
+     * This adds an empty level below the last one
+     */
+    private void addLevel() {
+        if (this.count == this.levels.length) {
+            int capacity = Math.max(4, 2 * this.count);
+            this.levels = Arrays.copyOf(this.levels, capacity);
+            this.sizes = Arrays.copyOf(this.sizes, capacity);
+            this.childStart = Arrays.copyOf(this.childStart, capacity);
+        }
+        if (this.levels[this.count] == null) {
+            this.levels[this.count] = new int[16];
+        }
+        this.sizes[this.count] = 0;
+        this.childStart[this.count] = new int[1];
+        this.count++;
+    }
+
+    /*
+     * This builds every level from the root down
+     */
+    private void build() {
+        this.count = 0;
+        this.built = true;
+        if (this.root == ArrayTree.NONE) {
+            this.startLevels();
+            return;
+        }
+        this.addLevel();
+        this.levels[0][0] = this.root;
+        this.sizes[0] = 1;
+        for (int level = 0; level < this.count; level++) {
+            int size = this.sizes[level];
+            int[] handles = this.levels[level];
+            int[] starts = new int[size + 1];
+            int[] below = new int[4 * size];
+            int next = 0;
+            for (int i = 0; i < size; i++) {
+                starts[i] = next;
+                for (int q = 0; q < 4; q++) {
+                    int c = this.tree.child(handles[i], q);
+                    if (c != ArrayTree.NONE) {
+                        below[next++] = c;
+                    }
+                }
+            }
+            starts[size] = next;
+            this.childStart[level] = starts;
+            if (next > 0) {
+                this.addLevel();
+                this.levels[this.count - 1] = below;
+                this.sizes[this.count - 1] = next;
+            }
+        }
+        this.startLevels();
+    }
+
+    /*
+     * This recomputes where each level starts
+     */
+    private void startLevels() {
+        if (this.levelStart.length < this.count) {
+            this.levelStart = new int[this.levels.length];
+        }
+        int start = 0;
+        for (int level = 0; level < this.count; level++) {
+            this.levelStart[level] = start;
+            start += this.sizes[level];
+        }
+    }
+
+    /*
+     * This returns the number of children of n
+     */
+    private int children(int n) {
+        int children = 0;
+        for (int q = 0; q < 4; q++) {
+            if (this.tree.child(n, q) != ArrayTree.NONE) {
+                children++;
+            }
+        }
+        return children;
+    }
+
+    /*
+     * This moves a[from, to) distance places to the right, wrapping round
+     */
+    private static void rotate(int[] a, int from, int to, int distance) {
+        reverse(a, from, to);
+        reverse(a, from, from + distance);
+        reverse(a, from + distance, to);
+    }
+
+    /*
+     * This reverses a[from, to)
+     */
+    private static void reverse(int[] a, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+}
@@ -0,0 +1,394 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Storage behind {@link ArrayBlock} and {@link ArrayGame}. The whole quad tree
+ * is kept in parallel primitive arrays and every node is an int handle.
+ *
+ * === Layout ===
+ *  - child[4 * n + q] handle of child q of node n, or NONE
+ *    (q: 0 top left, 1 top right, 2 bottom right, 3 bottom left,
+ *    the same clockwise order as {@link IBlock#children()})
+ *  - parent[n] handle of the parent of n, or NONE for the root
+ *  - quadrant[n] slot q of n inside its parent
+ *  - depth[n] level of n, the root is at depth zero
+ *  - color[n] index into {@link IBlock#COLORS}, or NO_COLOR if n is split
+ *
+ * No coordinates are stored: the bounds of a node follow from its quadrant
+ * path and the extent of the root, so rotate and swap only relink handles.
+ *
+ * The tree keeps the BFS ids of the nodes under one root in an
+ * {@link ArrayIndex}, patched by smash, unsmash, rotate and swap, and one
+ * reusable {@link ArrayBlock} view per handle.
+ *
+ * @author Daniel Xu
+ */
+class ArrayTree {
+
+    public static final int NONE = -1;
+    public static final byte NO_COLOR = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int[] SMASH_ORDER = { 0, 2, 1, 3 };
+
+    private final int extent;
+    private final SplittableRandom rand;
+
+    private int[] child;
+    private int[] parent;
+    private byte[] quadrant;
+    private byte[] depth;
+    private byte[] color;
+    private int size;
+    private ArrayBlock[] views = new ArrayBlock[0];
+    private final ArrayIndex index = new ArrayIndex(this);
+
+    /*
+     * This constructs an empty tree whose root covers (0,0) to (extent,extent)
+     *
+     * @param extent
+     */
+    ArrayTree(int extent) {
+        this(extent, new SplittableRandom());
+    }
+
+    /*
+     * Same as ArrayTree(extent), with every smash color and random pick
+     * drawn from rand
+     *
+     * @param extent
+     * @param rand
+     */
+    ArrayTree(int extent, SplittableRandom rand) {
+        this.extent = extent;
+        this.rand = rand;
+        this.child = new int[4 * INITIAL_CAPACITY];
+        this.parent = new int[INITIAL_CAPACITY];
+        this.quadrant = new byte[INITIAL_CAPACITY];
+        this.depth = new byte[INITIAL_CAPACITY];
+        this.color = new byte[INITIAL_CAPACITY];
+        Arrays.fill(this.child, NONE);
+    }
+
+    /*
+     * This allocates a new leaf node and returns its handle. The arrays
+     * double in size when they run out of room.
+     *
+     * @param nodeDepth
+     * @param parentNode
+     * @param slot
+     * @param paletteIndex
+     * @return handle
+     */
+    int newNode(int nodeDepth, int parentNode, int slot, int paletteIndex) {
+        if (this.size == this.parent.length) {
+            int capacity = this.parent.length * 2;
+            int oldChildren = this.child.length;
+            this.child = Arrays.copyOf(this.child, 4 * capacity);
+            Arrays.fill(this.child, oldChildren, this.child.length, NONE);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.quadrant = Arrays.copyOf(this.quadrant, capacity);
+            this.depth = Arrays.copyOf(this.depth, capacity);
+            this.color = Arrays.copyOf(this.color, capacity);
+        }
+        int n = this.size++;
+        this.parent[n] = parentNode;
+        this.quadrant[n] = (byte) slot;
+        this.depth[n] = (byte) nodeDepth;
+        this.color[n] = (byte) paletteIndex;
+        return n;
+    }
+
+    /*
+     * This returns the number of allocated nodes
+     *
+     * @return size
+     */
+    int size() {
+        return this.size;
+    }
+
+    /*
+     * This returns the extent of the root block
+     *
+     * @return extent
+     */
+    int extent() {
+        return this.extent;
+    }
+
+    /*
+     * This returns the view of node n, the same view for every call
+     *
+     * @param n
+     * @return view
+     */
+    ArrayBlock view(int n) {
+        if (n >= this.views.length) {
+            this.views = Arrays.copyOf(this.views, Math.max(n + 1, this.parent.length));
+        }
+        ArrayBlock view = this.views[n];
+        if (view == null) {
+            view = new ArrayBlock(this, n);
+            this.views[n] = view;
+        }
+        return view;
+    }
+
+    /*
+     * This returns the handle with BFS id pos in the tree under root
+     *
+     * @param root
+     * @param pos
+     * @return handle or NONE
+     */
+    int find(int root, int pos) {
+        return this.index.find(root, pos);
+    }
+
+    int child(int n, int slot) {
+        return this.child[4 * n + slot];
+    }
+
+    int parent(int n) {
+        return this.parent[n];
+    }
+
+    int depth(int n) {
+        return this.depth[n];
+    }
+
+    int color(int n) {
+        return this.color[n];
+    }
+
+    void setColor(int n, int paletteIndex) {
+        this.color[n] = (byte) paletteIndex;
+    }
+
+    /*
+     * This checks if node n has no sub blocks
+     *
+     * @param n
+     * @return boolean
+     */
+    boolean isLeaf(int n) {
+        int base = 4 * n;
+        return this.child[base] == NONE && this.child[base + 1] == NONE
+            && this.child[base + 2] == NONE && this.child[base + 3] == NONE;
+    }
+
+    /*
+     * This links node c into the given slot of node n. Passing NONE
+     * clears the slot. The ids are indexed again on the next find().
+     *
+     * @param n
+     * @param slot
+     * @param c
+     */
+    void setChild(int n, int slot, int c) {
+        this.link(n, slot, c);
+        this.index.reset();
+    }
+
+    private void link(int n, int slot, int c) {
+        this.child[4 * n + slot] = c;
+        if (c != NONE) {
+            this.parent[c] = n;
+            this.quadrant[c] = (byte) slot;
+        }
+    }
+
+    /*
+     * Same rules as Block.smash(): only a leaf above maxDepth is split, and
+     * the four new leaves get random colors from the palette.
+     *
+     * @param n
+     * @param maxDepth
+     */
+    void smash(int n, int maxDepth) {
+        this.smash(n, maxDepth, this.rand);
+    }
+
+    /*
+     * Same as smash(n, maxDepth), with the colors drawn from random
+     *
+     * @param n
+     * @param maxDepth
+     * @param random
+     */
+    void smash(int n, int maxDepth, SplittableRandom random) {
+        if (this.depth[n] < maxDepth && this.isLeaf(n)) {
+            int childDepth = this.depth[n] + 1;
+            this.color[n] = NO_COLOR;
+            //Colors are drawn in the order Block.smash() draws them (top
+            //left, bottom right, top right, bottom left), so a smash with a
+            //given seed colors both kinds of blocks the same way
+            int[] picks = new int[4];
+            for (int q : SMASH_ORDER) {
+                picks[q] = random.nextInt(IBlock.COLORS.length);
+            }
+            for (int q = 0; q < 4; q++) {
+                int c = this.newNode(childDepth, n, q, picks[q]);
+                this.child[4 * n + q] = c;
+            }
+            this.index.smashed(n);
+        }
+    }
+
+    /*
+     * This undoes a smash of node n: its four children are unlinked and n
+     * becomes a leaf of the given color again. The handles of the children
+     * are given back when they are the last ones allocated, which is the
+     * case when smashes are undone in reverse order.
+     *
+     * @param n
+     * @param paletteIndex
+     */
+    void unsmash(int n, int paletteIndex) {
+        this.index.unsmashing(n);
+        int base = 4 * n;
+        for (int q = 3; q >= 0; q--) {
+            int c = this.child[base + q];
+            this.child[base + q] = NONE;
+            if (c != NONE && c == this.size - 1 && this.isLeaf(c)) {
+                this.size--;
+            }
+        }
+        this.color[n] = (byte) paletteIndex;
+    }
+
+    /*
+     * This rotates the children of node n clockwise by moving handles only,
+     * the sub blocks need no coordinate update.
+     *
+     * @param n
+     */
+    void rotate(int n) {
+        if (!this.isLeaf(n)) {
+            int base = 4 * n;
+            int botLeft = this.child[base + 3];
+            this.link(n, 3, this.child[base + 2]);
+            this.link(n, 2, this.child[base + 1]);
+            this.link(n, 1, this.child[base]);
+            this.link(n, 0, botLeft);
+            this.index.rotated(n);
+        }
+    }
+
+    /*
+     * This exchanges the positions of nodes a and b inside the tree. The
+     * caller checks that both are at the same depth.
+     *
+     * @param a
+     * @param b
+     */
+    void swap(int a, int b) {
+        int parentA = this.parent[a];
+        int parentB = this.parent[b];
+        int slotA = this.quadrant[a];
+        int slotB = this.quadrant[b];
+        this.index.swapping(a, b);
+        this.link(parentA, slotA, b);
+        this.link(parentB, slotB, a);
+    }
+
+    /*
+     * This returns the side length of node n
+     *
+     * @param n
+     * @return size
+     */
+    int sideLength(int n) {
+        return this.extent >> this.depth[n];
+    }
+
+    /*
+     * This computes the x coordinate of the top left corner of node n by
+     * walking up its quadrant path
+     *
+     * @param n
+     * @return x
+     */
+    int x(int n) {
+        int x = 0;
+        for (int cur = n; this.parent[cur] != NONE; cur = this.parent[cur]) {
+            int q = this.quadrant[cur];
+            if (q == 1 || q == 2) {
+                x += this.sideLength(cur);
+            }
+        }
+        return x;
+    }
+
+    /*
+     * This computes the y coordinate of the top left corner of node n by
+     * walking up its quadrant path
+     *
+     * @param n
+     * @return y
+     */
+    int y(int n) {
+        int y = 0;
+        for (int cur = n; this.parent[cur] != NONE; cur = this.parent[cur]) {
+            int q = this.quadrant[cur];
+            if (q == 2 || q == 3) {
+                y += this.sideLength(cur);
+            }
+        }
+        return y;
+    }
+
+    /*
+     * This copies the tree below block into this store and returns the
+     * handle of the copy. Works for any IBlock implementation.
+     *
+     * @param block
+     * @param nodeDepth
+     * @param parentNode
+     * @param slot
+     * @return handle
+     */
+    int copyOf(IBlock block, int nodeDepth, int parentNode, int slot) {
+        int n = this.newNode(nodeDepth, parentNode, slot,
+                paletteIndex(block.getColor()));
+        IBlock[] subBlocks = { block.getTopLeftTree(), block.getTopRightTree(),
+            block.getBotRightTree(), block.getBotLeftTree() };
+        for (int q = 0; q < 4; q++) {
+            if (subBlocks[q] != null) {
+                int c = this.copyOf(subBlocks[q], nodeDepth + 1, n, q);
+                this.child[4 * n + q] = c;
+            }
+        }
+        return n;
+    }
+
+    /*
+     * This returns a uniformly random handle among all allocated nodes
+     *
+     * @param bound
+     * @return handle in [0, bound)
+     */
+    int randomNode(int bound) {
+        return this.rand.nextInt(bound);
+    }
+
+    /*
+     * This returns the palette index of color c, NO_COLOR for null
+     *
+     * @param c
+     * @return index
+     */
+    static int paletteIndex(Color c) {
+        if (c == null) {
+            return NO_COLOR;
+        }
+        for (int i = 0; i < IBlock.COLORS.length; i++) {
+            if (IBlock.COLORS[i].equals(c)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Color is not in the palette: " + c);
+    }
+}
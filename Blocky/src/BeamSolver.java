@@ -0,0 +1,221 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * An automatic player: a beam search over sequences of moves that maximizes
+ * the perimeter score. Each level expands every board of the beam with all
+ * of its moves (see {@link PersistentBoard#moves(SplittableRandom)}) and
+ * keeps the width best boards for the next level.
+ *
+ * The search runs on {@link PersistentBoard}s, so trying a move costs a path
+ * copy of O(depth) nodes, the score of the result is read off its root
+ * instead of flattening the board, and going back to try the next move is
+ * simply using the parent board again.
+ *
+ * Boards reached before, by another order of moves or from another board of
+ * the beam, are recognized by their Zobrist hash in a
+ * {@link TranspositionTable} and not kept again.
+ *
+ * A smash is searched with one sampled outcome: the move carries the seed
+ * of the colors the search evaluated, so replaying it gives that outcome.
+ *
+ * @author Daniel Xu
+ */
+public class BeamSolver {
+
+    private final int width;
+    private final int depth;
+    private final long seed;
+
+    /*
+     * This constructs a solver that keeps width boards per level and looks
+     * depth moves ahead. Seeds of smash moves come from seed.
+     *
+     * @param width
+     * @param depth
+     * @param seed
+     */
+    public BeamSolver(int width, int depth, long seed) {
+        if (width < 1 || depth < 0) {
+            throw new IllegalArgumentException("width must be positive and"
+                + " depth non negative");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.seed = seed;
+    }
+
+    /*
+     * This searches for the best sequence of at most depth moves from
+     * start. The start board is a candidate too, so the result never
+     * scores lower than start.
+     *
+     * @param start
+     * @return result
+     */
+    public Result solve(PersistentBoard start) {
+        long begin = System.nanoTime();
+        SplittableRandom rand = new SplittableRandom(this.seed);
+        Candidate best = new Candidate(start, null, null, 0);
+        List<Candidate> beam = Collections.singletonList(best);
+        long nodes = 1;
+        TranspositionTable seen = new TranspositionTable(
+            Math.min(1 << 20, Math.max(1 << 12, this.width * this.depth * 64)));
+        seen.seen(start.hash());
+
+        for (int level = 1; level <= this.depth && !beam.isEmpty(); level++) {
+            //Min heap of the width best children of this level
+            PriorityQueue<Candidate> kept = new PriorityQueue<>(this.width + 1);
+            for (Candidate parent : beam) {
+                for (Move move : parent.board.moves(rand)) {
+                    PersistentBoard child = parent.board.apply(move);
+                    nodes++;
+                    if (seen.seen(child.hash())) {
+                        continue;
+                    }
+                    int score = child.perimeterScore();
+                    if (kept.size() < this.width) {
+                        kept.add(new Candidate(child, parent, move, level));
+                    }
+                    else if (score > kept.peek().score) {
+                        kept.poll();
+                        kept.add(new Candidate(child, parent, move, level));
+                    }
+                }
+            }
+            beam = new ArrayList<>(kept);
+            for (Candidate candidate : beam) {
+                if (candidate.score > best.score) {
+                    best = candidate;
+                }
+            }
+        }
+        return new Result(best.moves(), best.board, nodes, seen.hits(),
+            System.nanoTime() - begin);
+    }
+
+    /**
+     * One board of the beam and the moves that lead to it
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final PersistentBoard board;
+        final Candidate parent;
+        final Move move;
+        final int length;
+        final int score;
+
+        Candidate(PersistentBoard board, Candidate parent, Move move,
+            int length) {
+            this.board = board;
+            this.parent = parent;
+            this.move = move;
+            this.length = length;
+            this.score = board.perimeterScore();
+        }
+
+        /*
+         * Lower scores first, then longer sequences, so the head of the
+         * heap is the candidate to drop
+         */
+        @Override
+        public int compareTo(Candidate other) {
+            if (this.score != other.score) {
+                return Integer.compare(this.score, other.score);
+            }
+            return Integer.compare(other.length, this.length);
+        }
+
+        List<Move> moves() {
+            Move[] moves = new Move[this.length];
+            for (Candidate c = this; c.parent != null; c = c.parent) {
+                moves[c.length - 1] = c.move;
+            }
+            return List.of(moves);
+        }
+    }
+
+    /**
+     * The outcome of a search
+     */
+    public static final class Result {
+        private final List<Move> moves;
+        private final PersistentBoard board;
+        private final long nodes;
+        private final long transpositions;
+        private final long nanos;
+
+        Result(List<Move> moves, PersistentBoard board, long nodes,
+            long transpositions, long nanos) {
+            this.moves = moves;
+            this.board = board;
+            this.nodes = nodes;
+            this.transpositions = transpositions;
+            this.nanos = nanos;
+        }
+
+        /*
+         * This returns the best moves found, in the order to play them
+         *
+         * @return moves
+         */
+        public List<Move> getMoves() {
+            return this.moves;
+        }
+
+        /*
+         * This returns the board the moves lead to
+         *
+         * @return board
+         */
+        public PersistentBoard getBoard() {
+            return this.board;
+        }
+
+        public int getScore() {
+            return this.board.perimeterScore();
+        }
+
+        /*
+         * This returns the number of boards the search generated
+         *
+         * @return nodes
+         */
+        public long getNodes() {
+            return this.nodes;
+        }
+
+        /*
+         * This returns how many of the boards had been seen before and
+         * were skipped
+         *
+         * @return transpositions
+         */
+        public long getTranspositions() {
+            return this.transpositions;
+        }
+
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        /*
+         * This returns the search speed in boards per second
+         *
+         * @return nodesPerSecond
+         */
+        public double nodesPerSecond() {
+            return this.nanos == 0 ? 0 : this.nodes * 1e9 / this.nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("score %d after %d moves, %d nodes (%d seen"
+                + " before) in %.1f ms (%.0f nodes/s)", this.getScore(),
+                this.moves.size(), this.nodes, this.transpositions,
+                this.nanos / 1e6, this.nodesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class BeamSolverTest {
+
+    /*
+     * This checks that every listed move is legal and changes the board
+     */
+    @Test
+    public void moves() {
+        PersistentBoard board = new PersistentGame(3, Color.red, 6L).getBoard();
+        List<Move> moves = board.moves(new SplittableRandom(1));
+        assertFalse(moves.isEmpty());
+        for (Move move : moves) {
+            assertNotSame(board, board.apply(move));
+        }
+    }
+
+    /*
+     * This checks that the moves of the result replay to the board of the
+     * result, on a Game as well, and that the search never ends below the
+     * start score
+     */
+    @Test
+    public void solve() {
+        for (long seed = 0; seed < 5; seed++) {
+            PersistentBoard start = new PersistentGame(4, Color.red, seed).getBoard();
+            BeamSolver.Result result = new BeamSolver(20, 3, seed).solve(start);
+            assertTrue(result.getScore() >= start.perimeterScore());
+            assertTrue(result.getMoves().size() <= 3);
+            assertTrue(result.getNodes() > 1);
+
+            PersistentBoard replay = start.apply(result.getMoves());
+            assertEquals(result.getScore(), replay.perimeterScore());
+
+            Game game = new Game(4, Color.red);
+            game.setRoot(Block.copyOf(start.getRoot()));
+            game.apply(result.getMoves());
+            assertEquals(result.getScore(), game.perimeter_score());
+        }
+    }
+
+    /*
+     * This checks that a width 100, depth 4 search on a depth 4 board
+     * finds an improvement when one exists, and does so well under a
+     * second. It takes about 0.1 s on a cold JVM, so the bound is loose
+     * enough for a slow machine and still fails on a blow up of the cost
+     * of a move.
+     */
+    @Test
+    public void improves() {
+        PersistentBoard start = new PersistentGame(4, Color.red, 1L).getBoard();
+        BeamSolver.Result result = new BeamSolver(100, 4, 1L).solve(start);
+        assertTrue(result.getScore() > start.perimeterScore());
+        assertTrue(result.toString(), result.getNanos() < 1_000_000_000L);
+        assertTrue(result.toString(), result.nodesPerSecond() > result.getNodes());
+    }
+}
@@ -0,0 +1,265 @@
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * Scores a flattened board by its largest blob: the number of unit cells in
+ * the largest 4-connected region of the target color.
+ *
+ * Cells are numbered row * gridSize + col and the regions are kept in a
+ * union-find over flat int arrays (union by size, path halving). Every root
+ * also keeps the bounding box of its region, and a count of regions per size
+ * gives the largest one without a pass over the roots.
+ *
+ * After a move only the cells in a changed rectangle need a new look:
+ * update() takes apart the regions that touch the rectangle (or its one cell
+ * border), finding their cells inside their bounding boxes, and joins their
+ * cells again from the current colors. Regions away from the move keep
+ * their roots, so a move costs about the size of the regions it touches
+ * rather than a flood fill of the whole grid.
+ *
+ * @author Daniel Xu
+ */
+final class BlobScorer {
+
+    private final int gridSize;
+    private final Color target;
+
+    //Union-find over the cells, only cells of the target color are joined
+    private final int[] parent;
+    private final int[] size;
+    private final boolean[] on;
+
+    //Bounding box of the region of each root, bottom and right inclusive
+    private final int[] top;
+    private final int[] left;
+    private final int[] bottom;
+    private final int[] right;
+
+    //How many regions there are of each size
+    private final int[] regions;
+    private int largest;
+
+    //Cells taken apart by update(), marked with the current pass
+    private final int[] work;
+    private final int[] mark;
+    private int pass;
+
+    /*
+     * This constructs a scorer for a gridSize by gridSize grid and the color
+     * that will be used to count the points. Call rebuild() before update().
+     *
+     * @param gridSize
+     * @param target
+     */
+    BlobScorer(int gridSize, Color target) {
+        int cells = gridSize * gridSize;
+        this.gridSize = gridSize;
+        this.target = target;
+        this.parent = new int[cells];
+        this.size = new int[cells];
+        this.on = new boolean[cells];
+        this.top = new int[cells];
+        this.left = new int[cells];
+        this.bottom = new int[cells];
+        this.right = new int[cells];
+        this.regions = new int[cells + 1];
+        this.work = new int[cells];
+        this.mark = new int[cells];
+    }
+
+    /*
+     * This returns the size of the largest blob of target in grid, without
+     * keeping anything for later moves
+     *
+     * @param grid
+     * @param target
+     * @return score
+     */
+    static int score(IBlock[][] grid, Color target) {
+        return new BlobScorer(grid.length, target).rebuild(grid);
+    }
+
+    int gridSize() {
+        return this.gridSize;
+    }
+
+    /*
+     * This returns the score of the grid last seen by rebuild() or update()
+     *
+     * @return score
+     */
+    int largest() {
+        return this.largest;
+    }
+
+    /*
+     * This joins every cell of grid again from scratch
+     *
+     * @param grid
+     * @return score
+     */
+    int rebuild(IBlock[][] grid) {
+        Arrays.fill(this.regions, 0);
+        this.largest = 0;
+        for (int r = 0; r < this.gridSize; r++) {
+            for (int c = 0; c < this.gridSize; c++) {
+                this.reset(grid, r * this.gridSize + c);
+            }
+        }
+        for (int r = 0; r < this.gridSize; r++) {
+            for (int c = 0; c < this.gridSize; c++) {
+                int cell = r * this.gridSize + c;
+                if (this.on[cell]) {
+                    if (c + 1 < this.gridSize && this.on[cell + 1]) {
+                        this.union(cell, cell + 1);
+                    }
+                    if (r + 1 < this.gridSize && this.on[cell + this.gridSize]) {
+                        this.union(cell, cell + this.gridSize);
+                    }
+                }
+            }
+        }
+        return this.largest;
+    }
+
+    /*
+     * This brings the regions up to date after the cells in rows
+     * [rowFrom, rowTo) and columns [colFrom, colTo) of grid changed. Cells
+     * outside the rectangle must be as they were at the last call.
+     *
+     * @param grid
+     * @param rowFrom
+     * @param colFrom
+     * @param rowTo
+     * @param colTo
+     * @return score
+     */
+    int update(IBlock[][] grid, int rowFrom, int colFrom, int rowTo,
+        int colTo) {
+        int n = this.gridSize;
+        int stamp = ++this.pass;
+        int count = 0;
+
+        //Take apart every region on the rectangle or next to it
+        for (int r = Math.max(0, rowFrom - 1); r < Math.min(n, rowTo + 1); r++) {
+            for (int c = Math.max(0, colFrom - 1); c < Math.min(n, colTo + 1); c++) {
+                int cell = r * n + c;
+                if (this.on[cell] && this.mark[cell] != stamp) {
+                    int root = this.find(cell);
+                    this.regions[this.size[root]]--;
+                    count = this.collect(root, stamp, count);
+                }
+            }
+        }
+        for (int r = rowFrom; r < rowTo; r++) {
+            for (int c = colFrom; c < colTo; c++) {
+                int cell = r * n + c;
+                if (this.mark[cell] != stamp) {
+                    this.mark[cell] = stamp;
+                    this.work[count++] = cell;
+                }
+            }
+        }
+
+        //Join the cells again from their current colors
+        for (int i = 0; i < count; i++) {
+            this.reset(grid, this.work[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            int cell = this.work[i];
+            if (this.on[cell]) {
+                int r = cell / n;
+                int c = cell % n;
+                if (c > 0 && this.on[cell - 1]) {
+                    this.union(cell, cell - 1);
+                }
+                if (c + 1 < n && this.on[cell + 1]) {
+                    this.union(cell, cell + 1);
+                }
+                if (r > 0 && this.on[cell - n]) {
+                    this.union(cell, cell - n);
+                }
+                if (r + 1 < n && this.on[cell + n]) {
+                    this.union(cell, cell + n);
+                }
+            }
+        }
+        while (this.largest > 0 && this.regions[this.largest] == 0) {
+            this.largest--;
+        }
+        return this.largest;
+    }
+
+    /*
+     * This adds the cells of the region of root, which all lie in its
+     * bounding box, to the work list and marks them
+     */
+    private int collect(int root, int stamp, int count) {
+        int n = this.gridSize;
+        for (int r = this.top[root]; r <= this.bottom[root]; r++) {
+            for (int c = this.left[root]; c <= this.right[root]; c++) {
+                int cell = r * n + c;
+                if (this.on[cell] && this.mark[cell] != stamp
+                    && this.find(cell) == root) {
+                    this.mark[cell] = stamp;
+                    this.work[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+
+    /*
+     * This makes cell a region of its own, with the color it has in grid
+     */
+    private void reset(IBlock[][] grid, int cell) {
+        int r = cell / this.gridSize;
+        int c = cell % this.gridSize;
+        IBlock leaf = grid[r][c];
+        this.on[cell] = leaf != null && this.target.equals(leaf.getColor());
+        this.parent[cell] = cell;
+        this.size[cell] = 1;
+        this.top[cell] = r;
+        this.bottom[cell] = r;
+        this.left[cell] = c;
+        this.right[cell] = c;
+        if (this.on[cell]) {
+            this.regions[1]++;
+            this.largest = Math.max(this.largest, 1);
+        }
+    }
+
+    private int find(int cell) {
+        while (this.parent[cell] != cell) {
+            this.parent[cell] = this.parent[this.parent[cell]];
+            cell = this.parent[cell];
+        }
+        return cell;
+    }
+
+    /*
+     * This joins the regions of cells a and b
+     */
+    private void union(int a, int b) {
+        a = this.find(a);
+        b = this.find(b);
+        if (a == b) {
+            return;
+        }
+        if (this.size[a] < this.size[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        this.regions[this.size[a]]--;
+        this.regions[this.size[b]]--;
+        this.parent[b] = a;
+        this.size[a] += this.size[b];
+        this.regions[this.size[a]]++;
+        this.largest = Math.max(this.largest, this.size[a]);
+        this.top[a] = Math.min(this.top[a], this.top[b]);
+        this.left[a] = Math.min(this.left[a], this.left[b]);
+        this.bottom[a] = Math.max(this.bottom[a], this.bottom[b]);
+        this.right[a] = Math.max(this.right[a], this.right[b]);
+    }
+}
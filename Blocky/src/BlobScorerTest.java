@@ -0,0 +1,88 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class BlobScorerTest {
+
+    /*
+     * This checks the blob of a small grid by hand: cells that only touch
+     * at a corner are not connected
+     */
+    @Test
+    public void largestBlob() {
+        String[] rows = {
+            "RRBB",
+            "RBRR",
+            "BRRB",
+            "RBBR" };
+        IBlock[][] grid = grid(rows);
+        assertEquals(4, BlobScorer.score(grid, Color.red));
+        assertEquals(2, BlobScorer.score(grid, Color.blue));
+        assertEquals(0, BlobScorer.score(grid, Color.green));
+
+        //Joining the two red regions through (1, 1)
+        BlobScorer blobs = new BlobScorer(4, Color.red);
+        blobs.rebuild(grid);
+        grid[1][1] = leaf(Color.red);
+        assertEquals(8, blobs.update(grid, 1, 1, 2, 2));
+        //and cutting them apart again
+        grid[1][1] = leaf(Color.blue);
+        assertEquals(4, blobs.update(grid, 1, 1, 2, 2));
+        grid[2][1] = leaf(Color.blue);
+        grid[2][2] = leaf(Color.blue);
+        assertEquals(3, blobs.update(grid, 2, 1, 3, 3));
+    }
+
+    /*
+     * This checks the running blob score of a Game against a count from
+     * scratch after every batch of random moves, and ArrayGame and
+     * PersistentGame against it
+     */
+    @Test
+    public void incrementalScore() {
+        SplittableRandom rand = new SplittableRandom(8);
+        PersistentGame moves = new PersistentGame(5, Color.red, 12L);
+        Game game = new Game(5, Color.red);
+        game.setRoot(Block.copyOf(moves.getRoot()));
+        assertEquals(BlobScorer.score(game.flatten(), Color.red), game.blob_score());
+        for (int i = 0; i < 300; i++) {
+            int batch = 1 + rand.nextInt(3);
+            for (int m = 0; m < batch; m++) {
+                Move move = moves.getBoard().randomMove(rand);
+                moves.apply(List.of(move));
+                game.apply(List.of(move));
+            }
+            int expected = BlobScorer.score(game.flatten(), Color.red);
+            assertEquals(expected, game.blob_score());
+            assertEquals(expected, moves.blob_score());
+        }
+
+        ArrayGame array = new ArrayGame(5, Color.red);
+        array.setRoot(game.getRoot());
+        assertEquals(game.blob_score(), array.blob_score());
+    }
+
+    private static IBlock[][] grid(String[] rows) {
+        IBlock[][] grid = new IBlock[rows.length][rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            for (int j = 0; j < rows.length; j++) {
+                grid[i][j] = leaf(rows[i].charAt(j) == 'R' ? Color.red : Color.blue);
+            }
+        }
+        return grid;
+    }
+
+    private static IBlock leaf(Color c) {
+        Block block = new Block(new Point(0, 0), new Point(1, 1), 0, null);
+        block.setColor(c);
+        return block;
+    }
+}
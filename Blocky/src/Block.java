@@ -1,7 +1,9 @@
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
@@ -22,6 +24,8 @@ public class Block implements IBlock {
     private IBlock botRightTree = null;
     private IBlock botLeftTree = null;
     private IBlock parentRoot;
+    private BlockListener listener;
+    private boolean implicitBounds;
 
 
 
@@ -44,6 +48,35 @@ public class Block implements IBlock {
         this.depth = depth; 
         this.parentRoot = parent;
         this.color = null;
+        if (parent instanceof Block) {
+            this.listener = ((Block) parent).listener;
+            this.implicitBounds = ((Block) parent).implicitBounds;
+        }
+    }
+
+    /*
+     * This method copies the tree under block, any IBlock implementation,
+     * into new Blocks with stored points and no listener. block becomes a
+     * root at depth 0.
+     * 
+     * @param block
+     * @return copy
+     */
+    static Block copyOf(IBlock block) {
+        return copyOf(block, null, 0);
+    }
+
+    private static Block copyOf(IBlock block, Block parent, int depth) {
+        Block copy = new Block(block.getTopLeft(), block.getBotRight(), depth,
+            parent);
+        copy.setColor(block.getColor());
+        if (!block.isleaf()) {
+            copy.setTopLeftTree(copyOf(block.getTopLeftTree(), copy, depth + 1));
+            copy.setTopRightTree(copyOf(block.getTopRightTree(), copy, depth + 1));
+            copy.setBotRightTree(copyOf(block.getBotRightTree(), copy, depth + 1));
+            copy.setBotLeftTree(copyOf(block.getBotLeftTree(), copy, depth + 1));
+        }
+        return copy;
     }
 
     /*
@@ -69,19 +102,48 @@ public class Block implements IBlock {
      * 
      * After creating the subblocks, these are set to the current nodes
      *NW, NE, SE, and SW children nodes
+     * 
+     * The colors come from the thread's ThreadLocalRandom, there is no
+     * generator to create or seed per call.
      */
     @Override
     public void smash(int maxDepth) {
-        Point curTopLeft = this.getTopLeft();
-        Point curBotRight = this.getBotRight();
+        this.smashWith(maxDepth, null);
+    }
 
+    /*
+     * Same as smash(maxDepth), with the colors drawn from random 
+     * 
+     * @param maxDepth
+     * @param random
+     */
+    @Override
+    public void smash(int maxDepth, SplittableRandom random) {
+        if (random == null) {
+            throw new IllegalArgumentException("random must not be null");
+        }
+        this.smashWith(maxDepth, random);
+    }
+
+    /*
+     * This picks a color index from random, or from the thread's
+     * ThreadLocalRandom if random is null
+     */
+    private static int pickColor(SplittableRandom random) {
+        return random == null ? ThreadLocalRandom.current().nextInt(COLORS.length)
+            : random.nextInt(COLORS.length);
+    }
+
+    private void smashWith(int maxDepth, SplittableRandom rand) {
         if (this.depth < maxDepth && this.isleaf()) {
+            Point curTopLeft = this.getTopLeft();
+            Point curBotRight = this.getBotRight();
+
             //Colors
-            Random rand = new Random();
-            int pick1 = rand.nextInt(COLORS.length);
-            int pick2 = rand.nextInt(COLORS.length);
-            int pick3 = rand.nextInt(COLORS.length);
-            int pick4 = rand.nextInt(COLORS.length);
+            int pick1 = pickColor(rand);
+            int pick2 = pickColor(rand);
+            int pick3 = pickColor(rand);
+            int pick4 = pickColor(rand);
 
 
             //remove color===================================
@@ -136,6 +198,9 @@ public class Block implements IBlock {
             this.setBotRightTree(botRight);
             this.setBotLeftTree(botLeft);
 
+            if (this.listener != null) {
+                this.listener.blockSmashed(this);
+            }
         }
     }
 
@@ -178,60 +243,86 @@ public class Block implements IBlock {
      * The updating of the subblocks' topLeft/botRight are done recursively by calling
      * updateXY() method, which takes in a subblock, topLeft, and botRight. 
      * This will then be all updated according.
+     * 
+     * With implicit bounds the subblocks derive their points from their new
+     * slots, so only the four pointers move and nothing below is touched.
      */
     @Override
     public void rotate() {
         if (!this.isleaf()) { 
-            //NW 
-            Point nwTL = this.topLeftTree.getTopLeft();
-            Point nwBR = this.topLeftTree.getBotRight();
-            //NE
-            Point neTL = this.topRightTree.getTopLeft();
-            Point neBR = this.topRightTree.getBotRight();
-            //SE
-            Point seTL = this.botRightTree.getTopLeft();
-            Point seBR = this.botRightTree.getBotRight();
-            //SW
-            Point swTL = this.botLeftTree.getTopLeft();
-            Point swBR = this.botLeftTree.getBotRight();
-
-            //Rotations
-            IBlock tmp = this.getBotLeftTree();
-            this.setBotLeftTree(this.getBotRightTree());
-            this.setBotRightTree(this.getTopRightTree());
-            this.setTopRightTree(this.getTopLeftTree());
-            this.setTopLeftTree(tmp);
-
-
-            //Update topLeft and botRight
-            this.getBotLeftTree().setTopLeft(swTL);
-            this.getBotLeftTree().setBotRight(swBR);
-
-            this.getBotRightTree().setTopLeft(seTL);
-            this.getBotRightTree().setBotRight(seBR);
-
-            this.getTopRightTree().setTopLeft(neTL);
-            this.getTopRightTree().setBotRight(neBR);
-
-            this.getTopLeftTree().setTopLeft(nwTL);
-            this.getTopLeftTree().setBotRight(nwBR);
-
-            //Recursive calls
-            updateXY(this.getTopLeftTree(), 
-                    this.getTopLeftTree().getTopLeft(), 
-                    this.getTopLeftTree().getBotRight());
-            updateXY(this.getTopRightTree(), 
-                    this.getTopRightTree().getTopLeft(), 
-                    this.getTopRightTree().getBotRight());
-            updateXY(this.getBotLeftTree(), 
-                    this.getBotLeftTree().getTopLeft(), 
-                    this.getBotLeftTree().getBotRight());
-            updateXY(this.getBotRightTree(), 
-                    this.getBotRightTree().getTopLeft(), 
-                    this.getBotRightTree().getBotRight());
+            if (this.implicitBounds) {
+                this.rotatePointers();
+            }
+            else {
+                this.rotateAndUpdateXY();
+            }
+
+            if (this.listener != null) {
+                this.listener.blockRotated(this);
+            }
         }
     }
 
+    /*
+     * This moves the four subblock pointers one step clockwise
+     */
+    private void rotatePointers() {
+        IBlock tmp = this.getBotLeftTree();
+        this.setBotLeftTree(this.getBotRightTree());
+        this.setBotRightTree(this.getTopRightTree());
+        this.setTopRightTree(this.getTopLeftTree());
+        this.setTopLeftTree(tmp);
+    }
+
+    /*
+     * This rotates the subblocks and rewrites the stored points of every
+     * block below this one
+     */
+    private void rotateAndUpdateXY() {
+        //NW 
+        Point nwTL = this.topLeftTree.getTopLeft();
+        Point nwBR = this.topLeftTree.getBotRight();
+        //NE
+        Point neTL = this.topRightTree.getTopLeft();
+        Point neBR = this.topRightTree.getBotRight();
+        //SE
+        Point seTL = this.botRightTree.getTopLeft();
+        Point seBR = this.botRightTree.getBotRight();
+        //SW
+        Point swTL = this.botLeftTree.getTopLeft();
+        Point swBR = this.botLeftTree.getBotRight();
+
+        //Rotations
+        this.rotatePointers();
+
+        //Update topLeft and botRight
+        this.getBotLeftTree().setTopLeft(swTL);
+        this.getBotLeftTree().setBotRight(swBR);
+
+        this.getBotRightTree().setTopLeft(seTL);
+        this.getBotRightTree().setBotRight(seBR);
+
+        this.getTopRightTree().setTopLeft(neTL);
+        this.getTopRightTree().setBotRight(neBR);
+
+        this.getTopLeftTree().setTopLeft(nwTL);
+        this.getTopLeftTree().setBotRight(nwBR);
+
+        //Recursive calls
+        updateXY(this.getTopLeftTree(), 
+                this.getTopLeftTree().getTopLeft(), 
+                this.getTopLeftTree().getBotRight());
+        updateXY(this.getTopRightTree(), 
+                this.getTopRightTree().getTopLeft(), 
+                this.getTopRightTree().getBotRight());
+        updateXY(this.getBotLeftTree(), 
+                this.getBotLeftTree().getTopLeft(), 
+                this.getBotLeftTree().getBotRight());
+        updateXY(this.getBotRightTree(), 
+                this.getBotRightTree().getTopLeft(), 
+                this.getBotRightTree().getBotRight());
+    }
+
 
     /*
      * This method is called by rotate() method to shift and update the subblock's 
@@ -291,24 +382,51 @@ public class Block implements IBlock {
     
     /*
      * This method is overridden because this is used to test if two blocks
-     * are the same, depending if it is a instanceof a block, the depth, and it's 
-     * points(x,y) in topLeft, botRight, and the colors of the blocks
+     * are the same: both are blocks with the same depth, points(x,y) in
+     * topLeft and botRight and color, and the same sub blocks, compared the
+     * same way. Two roots are equal when their whole boards are, so boards
+     * can be de-duplicated. Points and colors are compared by value.
      * 
      * @return boolean
      */
     @Override
     public boolean equals(Object o) {
-        if (o instanceof IBlock) {
-            IBlock o1 = ((IBlock) o);
-            return this.depth() == o1.depth() &&
-                    this.getTopLeft() == o1.getTopLeft() &&
-                    this.getBotRight() == o1.getBotRight() &&
-                    this.getColor() == o1.getColor();
+        if (o instanceof Block) {
+            Block o1 = ((Block) o);
+            if (this.depth() != o1.depth() ||
+                    !this.getTopLeft().equals(o1.getTopLeft()) ||
+                    !this.getBotRight().equals(o1.getBotRight()) ||
+                    !Objects.equals(this.getColor(), o1.getColor()) ||
+                    this.isleaf() != o1.isleaf()) {
+                return false;
+            }
+            if (!this.isleaf()) {
+                for (int i = 0; i < 4; i++) {
+                    if (!Objects.equals(this.getChild(i), o1.getChild(i))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
         }
         return false;
 
     }
 
+    /*
+     * This returns the subtree hash of the block (see Zobrist.hash()), so it
+     * agrees with equals(). Both walk the whole subtree, and the hash
+     * changes with any move under the block, so a board must not change
+     * while it is a key of a map; PersistentBoard keeps the same hash per
+     * node and is the cheaper key for boards that are searched.
+     * 
+     * @return hash
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(Zobrist.hashes(this)[0]);
+    }
+
     /*
      * This sets the parentNode of the current block
      * 
@@ -327,6 +445,46 @@ public class Block implements IBlock {
         return this.parentRoot;
     }
 
+    /*
+     * This undoes a smash: the four sub blocks are dropped and the block
+     * becomes a leaf of color c again. The listener hears it as a smash,
+     * as for the index the level below changes the same way.
+     * 
+     * @param c the color the block had before it was smashed
+     */
+    void unsmash(Color c) {
+        if (this.isleaf()) {
+            return;
+        }
+        this.topLeftTree = null;
+        this.topRightTree = null;
+        this.botRightTree = null;
+        this.botLeftTree = null;
+        this.setColor(c);
+        if (this.listener != null) {
+            this.listener.blockSmashed(this);
+        }
+    }
+
+    /*
+     * This sets the listener that is told about smash(), rotate() and
+     * setColor() calls on this block. Sub blocks created by smash() inherit it.
+     * 
+     * @param listener
+     */
+    void setListener(BlockListener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * This gets the listener of the current block
+     * 
+     * @return listener
+     */
+    BlockListener getListener() {
+        return this.listener;
+    }
+
     /*
      * This gets the color of the current block
      * 
@@ -345,6 +503,9 @@ public class Block implements IBlock {
     @Override
     public void setColor(Color c) {
         this.color = c;
+        if (this.listener != null) {
+            this.listener.blockRecolored(this);
+        }
     }
 
     /*
@@ -364,6 +525,9 @@ public class Block implements IBlock {
      */
     @Override
     public Point getTopLeft() {
+        if (this.hasImplicitBounds()) {
+            return new Point(this.offset(true), this.offset(false));
+        }
         return this.topLeft;
     }
 
@@ -385,9 +549,94 @@ public class Block implements IBlock {
      */
     @Override
     public Point getBotRight() {
+        if (this.hasImplicitBounds()) {
+            int side = this.side();
+            return new Point(this.offset(true) + side, this.offset(false) + side);
+        }
         return this.botRight;
     }
 
+    /*
+     * This switches this block and every block below it between stored
+     * points and points derived on demand from the position in the tree. 
+     * In the implicit mode only the root keeps its points, rotate() and 
+     * swaps just move pointers, and getTopLeft()/getBotRight() walk up the 
+     * parent chain (O(depth)). Switching back stores the derived points.
+     * 
+     * @param implicit
+     */
+    void setImplicitBounds(boolean implicit) {
+        if (!implicit && this.hasImplicitBounds()) {
+            this.topLeft = this.getTopLeft();
+            this.botRight = this.getBotRight();
+        }
+        this.implicitBounds = implicit;
+        for (int i = 0; i < 4; i++) {
+            IBlock child = this.getChild(i);
+            if (child instanceof Block) {
+                ((Block) child).setImplicitBounds(implicit);
+            }
+        }
+    }
+
+    /*
+     * This checks if the points of this block are derived from its parent
+     * instead of being stored
+     * 
+     * @return boolean
+     */
+    boolean hasImplicitBounds() {
+        return this.implicitBounds && this.parentRoot instanceof Block;
+    }
+
+    /*
+     * This returns the closest block up the parent chain (possibly this
+     * one) that stores its own points
+     * 
+     * @return anchor
+     */
+    private Block anchor() {
+        Block block = this;
+        while (block.hasImplicitBounds()) {
+            block = (Block) block.parentRoot;
+        }
+        return block;
+    }
+
+    /*
+     * This returns the side length of this block
+     * 
+     * @return side
+     */
+    private int side() {
+        Block anchor = this.anchor();
+        int anchorSide = anchor.botRight.getX() - anchor.topLeft.getX();
+        return anchorSide >> (this.depth - anchor.depth);
+    }
+
+    /*
+     * This derives the x (horizontal) or y coordinate of the top left
+     * corner from the slot of every block on the way up to the anchor
+     * 
+     * @param horizontal
+     * @return coordinate
+     */
+    private int offset(boolean horizontal) {
+        Block anchor = this.anchor();
+        int anchorSide = anchor.botRight.getX() - anchor.topLeft.getX();
+        int pos = horizontal ? anchor.topLeft.getX() : anchor.topLeft.getY();
+        for (Block block = this; block != anchor; block = (Block) block.parentRoot) {
+            IBlock parent = block.parentRoot;
+            boolean shifted = horizontal
+                ? block == parent.getTopRightTree() || block == parent.getBotRightTree()
+                : block == parent.getBotRightTree() || block == parent.getBotLeftTree();
+            if (shifted) {
+                pos += anchorSide >> (block.depth - anchor.depth);
+            }
+        }
+        return pos;
+    }
+
     /*
      * This checks if the current block is a leaf
      * 
@@ -395,7 +644,31 @@ public class Block implements IBlock {
      */
     @Override
     public boolean isleaf() {
-        return this.children().size() == 0;
+        return this.topLeftTree == null && this.topRightTree == null
+            && this.botRightTree == null && this.botLeftTree == null;
+    }
+
+    /*
+     * This returns the subblock at index i in children() order
+     * (NW, NE, SE, SW) without building a list
+     * 
+     * @param i
+     * @return IBlock
+     */
+    @Override
+    public IBlock getChild(int i) {
+        switch (i) {
+            case 0:
+                return this.topLeftTree;
+            case 1:
+                return this.topRightTree;
+            case 2:
+                return this.botRightTree;
+            case 3:
+                return this.botLeftTree;
+            default:
+                return null;
+        }
     }
 
     //==============================Getters
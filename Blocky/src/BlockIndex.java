@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The id -> block index behind {@link Game#getBlock(int)}. Ids are the BFS
+ * order of the tree, so the index keeps one list per level and the id of a
+ * block is the number of blocks on the levels above it plus its position
+ * on its own level. Next to each level it keeps where the children of each
+ * block start on the level below, so the position of a block follows from
+ * the path to it and the blocks under it on any level are one range.
+ *
+ * In BFS order the blocks under a block are a contiguous range of every
+ * lower level, so moves are patched in place instead of re-indexed. A smash
+ * inserts four blocks into one level (and its undo removes them), a rotate
+ * at depth d rotates the range under the block on each lower level, and a
+ * swap at depth d trades the two ranges on each lower level. Only the
+ * ranges a move covers, and for a swap the blocks between them, are
+ * touched. The whole index is built once, on the first lookup after
+ * reset().
+ *
+ * A lookup is O(depth): it finds the level of the id, then indexes into
+ * it. A smash is O(size of the level below), for the insert and the copy of
+ * that level's child starts, and finding a block's position walks up to the
+ * root, O(depth).
+ *
+ * @author Daniel Xu
+ */
+class BlockIndex {
+
+    private final List<List<IBlock>> levels = new ArrayList<>();
+    //childStart[l][i] is the position on level l + 1 of the first child of
+    //block i of level l, childStart[l][size of l] the size of level l + 1
+    private int[][] childStart = new int[0][];
+    private int[] levelStart = new int[0];
+    private IBlock root;
+    private boolean built;
+
+    /*
+     * This rebuilds the whole index for the tree under root
+     *
+     * @param root
+     */
+    void reset(IBlock root) {
+        this.root = root;
+        this.built = false;
+    }
+
+    /*
+     * This returns the block with BFS id pos
+     *
+     * @param pos
+     * @return IBlock
+     */
+    IBlock get(int pos) {
+        this.build();
+        for (int level = this.levels.size() - 1; level >= 0; level--) {
+            if (pos >= this.levelStart[level]) {
+                return this.levels.get(level).get(pos - this.levelStart[level]);
+            }
+        }
+        throw new IndexOutOfBoundsException("No block with id " + pos);
+    }
+
+    /*
+     * This returns the number of blocks in the tree
+     *
+     * @return size
+     */
+    int size() {
+        this.build();
+        int last = this.levels.size() - 1;
+        return last < 0 ? 0
+            : this.levelStart[last] + this.levels.get(last).size();
+    }
+
+    /*
+     * A smash inserts the four new leaves into the level under block, an
+     * undone smash (see Block.unsmash()) removes them again
+     *
+     * @param block
+     */
+    void smashed(IBlock block) {
+        if (!this.built) {
+            return;
+        }
+        int depth = block.depth();
+        int pos = this.positionOf(block);
+        int from = this.childStart[depth][pos];
+        int to = this.childStart[depth][pos + 1];
+        if (!block.isleaf() && from == to) {
+            this.insertChildren(block, depth, pos, from);
+        }
+        else if (block.isleaf() && from < to
+            && this.childStart[depth + 1][from] == this.childStart[depth + 1][to]) {
+            this.removeChildren(depth, pos, from, to);
+        }
+        else if (from != to || !block.isleaf()) {
+            //Not a smash of a leaf or the undo of one, index it all again
+            this.built = false;
+        }
+    }
+
+    private void insertChildren(IBlock block, int depth, int pos, int at) {
+        if (depth + 1 == this.levels.size()) {
+            this.levels.add(new ArrayList<>());
+            this.childStart = Arrays.copyOf(this.childStart, depth + 2);
+            this.childStart[depth + 1] = new int[1];
+        }
+        List<IBlock> below = this.levels.get(depth + 1);
+        int added = 0;
+        for (int i = 0; i < 4; i++) {
+            IBlock child = block.getChild(i);
+            if (child != null) {
+                below.add(at + added++, child);
+            }
+        }
+        this.shift(depth, pos + 1, added);
+        //The new leaves have no children, they start where the block at did
+        int[] starts = this.childStart[depth + 1];
+        int[] grown = new int[starts.length + added];
+        System.arraycopy(starts, 0, grown, 0, at + 1);
+        Arrays.fill(grown, at + 1, at + added + 1, starts[at]);
+        System.arraycopy(starts, at + 1, grown, at + added + 1, starts.length - at - 1);
+        this.childStart[depth + 1] = grown;
+        this.startLevels();
+    }
+
+    private void removeChildren(int depth, int pos, int from, int to) {
+        List<IBlock> below = this.levels.get(depth + 1);
+        below.subList(from, to).clear();
+        this.shift(depth, pos + 1, from - to);
+        int[] starts = this.childStart[depth + 1];
+        int[] shrunk = new int[starts.length - (to - from)];
+        System.arraycopy(starts, 0, shrunk, 0, from + 1);
+        System.arraycopy(starts, to + 1, shrunk, from + 1, starts.length - to - 1);
+        this.childStart[depth + 1] = shrunk;
+        if (below.isEmpty()) {
+            this.levels.remove(depth + 1);
+            this.childStart = Arrays.copyOf(this.childStart, depth + 1);
+        }
+        this.startLevels();
+    }
+
+    /*
+     * A rotate moves the range under the last child of block to the front
+     * of the range under block, on every level below it
+     *
+     * @param block
+     */
+    void rotated(IBlock block) {
+        if (!this.built) {
+            return;
+        }
+        int level = block.depth();
+        int pos = this.positionOf(block);
+        int from = pos;
+        int to = pos + 1;
+        int lastFrom = pos;
+        int lastTo = pos + 1;
+        for (level++; level < this.levels.size(); level++) {
+            int[] starts = this.childStart[level - 1];
+            if (level == block.depth() + 1) {
+                lastFrom = starts[to] - 1;
+                lastTo = starts[to];
+            }
+            else {
+                lastFrom = starts[lastFrom];
+                lastTo = starts[lastTo];
+            }
+            from = starts[from];
+            to = starts[to];
+            if (from == to) {
+                break;
+            }
+            Collections.rotate(this.levels.get(level).subList(from, to),
+                lastTo - lastFrom);
+        }
+        //The counts of children moved with the blocks
+        this.recount(block.depth(), pos, pos + 1);
+    }
+
+    /*
+     * This records that the blocks with ids x and y (both at depth) traded
+     * places: the two blocks, and the two ranges under them on every lower
+     * level, trade places in the level lists
+     *
+     * @param x
+     * @param y
+     * @param depth
+     */
+    void swapped(int x, int y, int depth) {
+        if (!this.built || x == y) {
+            return;
+        }
+        int first = Math.min(x, y) - this.levelStart[depth];
+        int second = Math.max(x, y) - this.levelStart[depth];
+        //Ranges [firstFrom, firstTo) and [secondFrom, secondTo) on a level
+        int firstFrom = first;
+        int firstTo = first + 1;
+        int secondFrom = second;
+        int secondTo = second + 1;
+        for (int level = depth; level < this.levels.size(); level++) {
+            if (level > depth) {
+                int[] starts = this.childStart[level - 1];
+                firstFrom = starts[firstFrom];
+                firstTo = starts[firstTo];
+                secondFrom = starts[secondFrom];
+                secondTo = starts[secondTo];
+                if (firstFrom == firstTo && secondFrom == secondTo) {
+                    break;
+                }
+            }
+            List<IBlock> blocks = this.levels.get(level);
+            //Reversing the span and then each part trades the outer parts
+            Collections.reverse(blocks.subList(firstFrom, secondTo));
+            int secondSize = secondTo - secondFrom;
+            int middleTo = secondTo - (firstTo - firstFrom);
+            Collections.reverse(blocks.subList(firstFrom, firstFrom + secondSize));
+            Collections.reverse(blocks.subList(firstFrom + secondSize, middleTo));
+            Collections.reverse(blocks.subList(middleTo, secondTo));
+        }
+        this.recount(depth, first, second + 1);
+    }
+
+    /*
+     * This returns the position of block on its level, following the path
+     * from the root down
+     */
+    private int positionOf(IBlock block) {
+        IBlock parent = ((Block) block).getParent();
+        if (parent == null) {
+            return 0;
+        }
+        int pos = this.childStart[block.depth() - 1][this.positionOf(parent)];
+        for (int i = 0; i < 4; i++) {
+            IBlock child = parent.getChild(i);
+            if (child == block) {
+                return pos;
+            }
+            if (child != null) {
+                pos++;
+            }
+        }
+        throw new IllegalStateException("A block is not a child of its parent");
+    }
+
+    /*
+     * This recomputes the child starts of the blocks in [from, to) of level
+     * and of the ranges under them on every lower level, after their blocks
+     * were reordered. The start of the range and its end do not move.
+     */
+    private void recount(int level, int from, int to) {
+        for (; level < this.levels.size() - 1 && from < to; level++) {
+            List<IBlock> blocks = this.levels.get(level);
+            int[] starts = this.childStart[level];
+            int next = starts[from];
+            int nextFrom = next;
+            for (int i = from; i < to; i++) {
+                starts[i] = next;
+                next += children(blocks.get(i));
+            }
+            from = nextFrom;
+            to = next;
+        }
+    }
+
+    /*
+     * This adds count to the child starts of level from block from on
+     */
+    private void shift(int level, int from, int count) {
+        int[] starts = this.childStart[level];
+        for (int i = from; i < starts.length; i++) {
+            starts[i] += count;
+        }
+    }
+
+    /*
+     * This builds every level from the root down
+     */
+    private void build() {
+        if (this.built) {
+            return;
+        }
+        this.levels.clear();
+        if (this.root != null) {
+            List<IBlock> top = new ArrayList<>(1);
+            top.add(this.root);
+            this.levels.add(top);
+        }
+        List<int[]> starts = new ArrayList<>();
+        for (int level = 0; level < this.levels.size(); level++) {
+            List<IBlock> parents = this.levels.get(level);
+            List<IBlock> blocks = new ArrayList<>(4 * parents.size());
+            int[] start = new int[parents.size() + 1];
+            for (int p = 0; p < parents.size(); p++) {
+                start[p] = blocks.size();
+                IBlock parent = parents.get(p);
+                if (!parent.isleaf()) {
+                    for (int i = 0; i < 4; i++) {
+                        IBlock child = parent.getChild(i);
+                        if (child != null) {
+                            blocks.add(child);
+                        }
+                    }
+                }
+            }
+            start[parents.size()] = blocks.size();
+            starts.add(start);
+            if (!blocks.isEmpty()) {
+                this.levels.add(blocks);
+            }
+        }
+        this.childStart = starts.toArray(new int[0][]);
+        this.startLevels();
+        this.built = true;
+    }
+
+    /*
+     * This recomputes where each level starts
+     */
+    private void startLevels() {
+        if (this.levelStart.length != this.levels.size()) {
+            this.levelStart = new int[this.levels.size()];
+        }
+        int start = 0;
+        for (int level = 0; level < this.levels.size(); level++) {
+            this.levelStart[level] = start;
+            start += this.levels.get(level).size();
+        }
+    }
+
+    /*
+     * This returns the number of children of block
+     */
+    private static int children(IBlock block) {
+        if (block.isleaf()) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = 0; i < 4; i++) {
+            if (block.getChild(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Callback used by {@link Block} to tell the game that owns it about
+ * structural changes made directly on a block (for example
+ * <code>game.getBlock(id).rotate()</code>), so the game can keep its
+ * derived state up to date without re-walking the whole tree.
+ *
+ * @author Daniel Xu
+ */
+interface BlockListener {
+
+    /**
+     * called after block has been split into four sub blocks
+     *
+     * @param block the block that was smashed
+     */
+    public void blockSmashed(IBlock block);
+
+
+    /**
+     * called after the sub blocks of block have been rotated clockwise
+     *
+     * @param block the block that was rotated
+     */
+    public void blockRotated(IBlock block);
+
+
+    /**
+     * called after the color of block has been changed with setColor()
+     *
+     * @param block the block that was recolored
+     */
+    public void blockRecolored(IBlock block);
+
+}
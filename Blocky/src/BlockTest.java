@@ -123,6 +123,37 @@ public class BlockTest {
         assertEquals(root1, root2.getParent());
         assertNotEquals(root1, root3);
         assertNotEquals(root1, topLeft);
+
+        //Blocks with equal points and colors are equal, not only the same block
+        Block copy = new Block(new Point(0,0), new Point(8,8), 0, null);
+        assertEquals(root1, copy);
+        assertEquals(root1.hashCode(), copy.hashCode());
+        copy.setColor(Color.red);
+        assertNotEquals(root1, copy);
         
     }
+    
+    /*
+     * Same as rotate(), but the sub blocks derive their points from their
+     * position in the tree so rotate() only moves pointers
+     */
+    @Test
+    public void rotateImplicitBounds() {
+        Point topLeft = new Point(0,0);
+        Point botRight = new Point(8,8);
+        Block root = new Block(topLeft, botRight, 0, null);
+        root.setImplicitBounds(true);
+        root.smash(3);
+        root.getBotRightTree().smash(3);
+        IBlock moved = root.getBotRightTree().getTopLeftTree();
+        root.rotate();
+
+        //The smashed block went from the bottom right to the bottom left
+        assertEquals(0, root.getBotLeftTree().getTopLeft().getX());
+        assertEquals(4, root.getBotLeftTree().getTopLeft().getY());
+        assertEquals(0, moved.getTopLeft().getX());
+        assertEquals(4, moved.getTopLeft().getY());
+        assertEquals(2, moved.getBotRight().getX());
+        assertEquals(6, moved.getBotRight().getY());
+    }
 }
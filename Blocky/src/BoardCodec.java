@@ -0,0 +1,275 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A compact binary format for boards. The geometry of a board follows from
+ * its size and shape, so only the shape and the colors are stored:
+ *
+ *  - one header byte, log2 of the size of the root (8 for a 256 x 256 root);
+ *    the high bit is set for a root that is a leaf without a color, like
+ *    the board of a game of max depth 0, and nothing follows it
+ *  - the blocks in preorder (the root, then its sub blocks in children()
+ *    order, each followed by its own sub blocks): a 1 bit for a block that
+ *    is split, a 0 bit and 3 bits of {@link IBlock#COLORS} index for a leaf
+ *  - zero bits up to the next byte
+ *
+ * A board with 100 leaves (33 split blocks) takes 1 + 55 bytes. Bits are
+ * written high bit first. Boards are written and read with one pass down the tree,
+ * with nothing kept but the byte being filled, so any number of boards can
+ * follow each other on one stream.
+ *
+ * Boards are read back with their root at (0, 0).
+ *
+ * @author Daniel Xu
+ */
+public final class BoardCodec {
+
+    private static final int COLOR_BITS = 3;
+    private static final int MAX_LOG_EXTENT = 30;
+    private static final int BLANK = 0x80;
+
+    private BoardCodec() {
+    }
+
+    /*
+     * This writes the board under root to out
+     *
+     * @param root
+     * @param out
+     * @throws IllegalArgumentException if the root is not a power of two
+     *         in size or a leaf has a color outside the palette, or no
+     *         color below the root
+     * @throws IOException
+     */
+    public static void write(IBlock root, OutputStream out) throws IOException {
+        int extent = root.getBotRight().getX() - root.getTopLeft().getX();
+        if (extent <= 0 || Integer.bitCount(extent) != 1) {
+            throw new IllegalArgumentException(
+                "The root must be a power of two in size, not " + extent);
+        }
+        int log = Integer.numberOfTrailingZeros(extent);
+        if (root.isleaf() && root.getColor() == null) {
+            out.write(BLANK | log);
+            return;
+        }
+        out.write(log);
+        BitWriter bits = new BitWriter(out);
+        writeBlock(root, bits);
+        bits.finish();
+    }
+
+    /*
+     * This reads the next board of in. Bytes after the board are left on
+     * the stream; in is read one byte at a time, so it should be buffered.
+     *
+     * @param in
+     * @return root
+     * @throws EOFException if the stream ends inside the board
+     * @throws StreamCorruptedException if the bits do not make a board
+     * @throws IOException
+     */
+    public static IBlock read(InputStream in) throws IOException {
+        return read(new BitReader(in, null));
+    }
+
+    /*
+     * This reads the board that starts at the position of buffer, straight
+     * from the buffer (a mapped file for example), and leaves the position
+     * just after the board
+     *
+     * @param buffer
+     * @return root
+     * @throws EOFException if the buffer ends inside the board
+     * @throws StreamCorruptedException if the bits do not make a board
+     */
+    public static IBlock read(ByteBuffer buffer) throws IOException {
+        return read(new BitReader(null, buffer));
+    }
+
+    private static IBlock read(BitReader bits) throws IOException {
+        int log = bits.next();
+        if (log < 0) {
+            throw new EOFException("No board on the stream");
+        }
+        int extent = 1 << (log & ~BLANK);
+        if ((log & ~BLANK) > MAX_LOG_EXTENT) {
+            throw new StreamCorruptedException("Bad board header " + log);
+        }
+        if ((log & BLANK) != 0) {
+            return new Block(new Point(0, 0), new Point(extent, extent), 0, null);
+        }
+        return readBlock(bits, null, 0, 0, extent, 0);
+    }
+
+    /*
+     * This returns the bytes write() gives for the board under root
+     *
+     * @param root
+     * @return bytes
+     */
+    public static byte[] encode(IBlock root) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(root, out);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /*
+     * This reads back the board of encode()
+     *
+     * @param bytes
+     * @return root
+     * @throws IllegalArgumentException if the bytes do not hold a board
+     */
+    public static IBlock decode(byte[] bytes) {
+        try {
+            return read(new ByteArrayInputStream(bytes));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Not a board: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeBlock(IBlock block, BitWriter bits)
+        throws IOException {
+        if (block.isleaf()) {
+            int color = ArrayTree.paletteIndex(block.getColor());
+            if (color == ArrayTree.NO_COLOR) {
+                throw new IllegalArgumentException(
+                    "Only a root leaf may be without a color");
+            }
+            bits.write(color, 1 + COLOR_BITS);
+            return;
+        }
+        bits.write(1, 1);
+        for (int i = 0; i < 4; i++) {
+            writeBlock(block.getChild(i), bits);
+        }
+    }
+
+    private static Block readBlock(BitReader bits, Block parent, int x, int y,
+        int side, int depth) throws IOException {
+        Block block = new Block(new Point(x, y), new Point(x + side, y + side),
+            depth, parent);
+        if (bits.read(1) == 0) {
+            block.setColor(IBlock.COLORS[bits.read(COLOR_BITS)]);
+            return block;
+        }
+        if (side == 1) {
+            throw new StreamCorruptedException("A unit block cannot be split");
+        }
+        int half = side / 2;
+        Block[] subs = new Block[4];
+        for (int i = 0; i < 4; i++) {
+            subs[i] = readBlock(bits, block, x + Game.subX(i, half),
+                y + Game.subY(i, half), half, depth + 1);
+        }
+        block.setTopLeftTree(subs[0]);
+        block.setTopRightTree(subs[1]);
+        block.setBotRightTree(subs[2]);
+        block.setBotLeftTree(subs[3]);
+        return block;
+    }
+
+    /**
+     * Packs bits into bytes, high bit first, and writes them in chunks
+     */
+    private static final class BitWriter {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[512];
+        private int length;
+        private int current;
+        private int count;
+
+        BitWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        /*
+         * This writes the low n bits of value
+         */
+        void write(int value, int n) throws IOException {
+            for (int i = n - 1; i >= 0; i--) {
+                this.current = (this.current << 1) | ((value >>> i) & 1);
+                if (++this.count == 8) {
+                    this.push();
+                }
+            }
+        }
+
+        /*
+         * This pads the last byte with zero bits and writes what is left
+         */
+        void finish() throws IOException {
+            if (this.count > 0) {
+                this.current <<= 8 - this.count;
+                this.push();
+            }
+            this.out.write(this.buffer, 0, this.length);
+            this.length = 0;
+        }
+
+        private void push() throws IOException {
+            if (this.length == this.buffer.length) {
+                this.out.write(this.buffer, 0, this.length);
+                this.length = 0;
+            }
+            this.buffer[this.length++] = (byte) this.current;
+            this.current = 0;
+            this.count = 0;
+        }
+    }
+
+    /**
+     * Reads bits back from a stream or a buffer, high bit first, never past
+     * the last byte of a board
+     */
+    private static final class BitReader {
+        private final InputStream in;
+        private final ByteBuffer buffer;
+        private int current;
+        private int count;
+
+        BitReader(InputStream in, ByteBuffer buffer) {
+            this.in = in;
+            this.buffer = buffer;
+        }
+
+        /*
+         * This returns the next whole byte, -1 at the end
+         */
+        int next() throws IOException {
+            if (this.buffer == null) {
+                return this.in.read();
+            }
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        int read(int n) throws IOException {
+            int value = 0;
+            for (int i = 0; i < n; i++) {
+                if (this.count == 0) {
+                    this.current = this.next();
+                    if (this.current < 0) {
+                        throw new EOFException("The board ends early");
+                    }
+                    this.count = 8;
+                }
+                this.count--;
+                value = (value << 1) | ((this.current >>> this.count) & 1);
+            }
+            return value;
+        }
+    }
+}
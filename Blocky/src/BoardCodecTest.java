@@ -0,0 +1,89 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class BoardCodecTest {
+
+    /*
+     * This checks that boards of several depths come back with the same
+     * blocks, and that the size is one bit per split block and four per
+     * leaf after the header
+     */
+    @Test
+    public void roundTrip() throws IOException {
+        for (int depth = 0; depth <= 7; depth++) {
+            Game game = new Game(depth, Color.red, 30L + depth);
+            IBlock root = game.getRoot();
+            byte[] bytes = BoardCodec.encode(root);
+
+            int blocks = PersistentBoard.of(root, depth, Color.red).size();
+            int leaves = (3 * blocks + 1) / 4;
+            int bits = (blocks - leaves) + 4 * leaves;
+            assertEquals(depth == 0 ? 1 : 1 + (bits + 7) / 8, bytes.length);
+
+            IBlock copy = BoardCodec.decode(bytes);
+            assertArrayEquals(Zobrist.hashes(root), Zobrist.hashes(copy));
+            Game other = new Game(depth, Color.red);
+            other.setRoot(copy);
+            assertEquals(game.perimeter_score(), other.perimeter_score());
+            for (int id = 0; id < blocks; id++) {
+                assertEquals(game.getBlock(id), other.getBlock(id));
+                assertEquals(game.getBlock(id).depth(), other.getBlock(id).depth());
+            }
+            assertArrayEquals(bytes, BoardCodec.encode(copy));
+        }
+    }
+
+    /*
+     * This checks that boards written one after the other are read back
+     * one at a time, and that a cut or broken stream is reported
+     */
+    @Test
+    public void stream() throws IOException {
+        IBlock first = new Game(3, Color.red, 1L).getRoot();
+        IBlock second = new Game(5, Color.red, 2L).getRoot();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BoardCodec.write(first, out);
+        BoardCodec.write(second, out);
+        out.write(42);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        IBlock back = BoardCodec.read(in);
+        assertEquals(first, back);
+        assertArrayEquals(Zobrist.hashes(first), Zobrist.hashes(back));
+        //A board of the same size but other leaves does not pass for it
+        assertNotEquals(new Game(3, Color.red, 2L).getRoot(), back);
+        assertArrayEquals(Zobrist.hashes(second), Zobrist.hashes(BoardCodec.read(in)));
+        assertEquals(42, in.read());
+
+        byte[] bytes = BoardCodec.encode(second);
+        try {
+            BoardCodec.read(new ByteArrayInputStream(
+                Arrays.copyOf(bytes, bytes.length - 1)));
+            fail();
+        }
+        catch (EOFException e) {
+            //expected
+        }
+        try {
+            //A unit root that claims to be split
+            BoardCodec.read(new ByteArrayInputStream(new byte[] { 0, (byte) 0x80 }));
+            fail();
+        }
+        catch (StreamCorruptedException e) {
+            //expected
+        }
+    }
+}
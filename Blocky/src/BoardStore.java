@@ -0,0 +1,327 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A corpus of saved boards on disk. Boards are appended one after the other
+ * in the {@link BoardCodec} format to a data file, and an index file next to
+ * it (the data file name plus ".index") holds the end offset of every board
+ * as a big-endian long, so board n runs from the end of board n - 1 to its
+ * own end.
+ *
+ * A store opened for reading maps both files with FileChannel.map and
+ * decodes boards straight from the mapped data, so board n is one index
+ * lookup away and a scan in board order reads the data file front to back.
+ * The data is mapped in segments of at most 2 GB that never cut a board in
+ * two. Reading is safe from any number of threads; boards appended after
+ * open() are seen by the next open().
+ *
+ * Data is always written, and forced to the device, before the index
+ * entries that point into it. A store cut short by a crash of the process
+ * or of the machine therefore ends at its last indexed board, and append()
+ * drops anything written past it.
+ *
+ * @author Daniel Xu
+ */
+public final class BoardStore implements Closeable {
+
+    static final String INDEX_SUFFIX = ".index";
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE;
+
+    private final LongBuffer ends;
+    private final int size;
+    private final MappedByteBuffer[] segments;
+    private final long[] segmentStarts;
+
+    private BoardStore(LongBuffer ends, MappedByteBuffer[] segments,
+        long[] segmentStarts) {
+        this.ends = ends;
+        this.size = ends.limit();
+        this.segments = segments;
+        this.segmentStarts = segmentStarts;
+    }
+
+    /*
+     * This maps the store in file for reading
+     *
+     * @param file
+     * @return store
+     * @throws IOException
+     */
+    public static BoardStore open(Path file) throws IOException {
+        return open(file, MAX_SEGMENT);
+    }
+
+    /*
+     * Same as open(file) with data segments of at most maxSegment bytes
+     */
+    static BoardStore open(Path file, long maxSegment) throws IOException {
+        LongBuffer ends;
+        try (FileChannel index = FileChannel.open(indexOf(file))) {
+            long entries = index.size() / Long.BYTES;
+            if (entries > Integer.MAX_VALUE) {
+                throw new IOException("Too many boards in " + file);
+            }
+            ends = index.map(FileChannel.MapMode.READ_ONLY, 0,
+                entries * Long.BYTES).asLongBuffer();
+        }
+
+        try (FileChannel data = FileChannel.open(file)) {
+            int size = ends.limit();
+            long end = size == 0 ? 0 : ends.get(size - 1);
+            if (end > data.size()) {
+                throw new StreamCorruptedException("The index of " + file
+                    + " points past the end of its data");
+            }
+            //Cut the data into segments at board boundaries
+            long[] starts = new long[4];
+            int count = 0;
+            long start = 0;
+            long prev = 0;
+            for (int n = 0; n < size; n++) {
+                long boardEnd = ends.get(n);
+                if (boardEnd - prev > maxSegment) {
+                    throw new IOException("Board " + n + " is too large to map");
+                }
+                if (boardEnd - start > maxSegment) {
+                    starts = grow(starts, count);
+                    starts[count++] = start;
+                    start = prev;
+                }
+                prev = boardEnd;
+            }
+            starts = grow(starts, count);
+            starts[count++] = start;
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int s = 0; s < count; s++) {
+                long segmentEnd = s + 1 < count ? starts[s + 1] : end;
+                segments[s] = data.map(FileChannel.MapMode.READ_ONLY,
+                    starts[s], segmentEnd - starts[s]);
+            }
+            return new BoardStore(ends, segments, Arrays.copyOf(starts, count));
+        }
+    }
+
+    /*
+     * This opens the store in file for appending, creating it if needed
+     *
+     * @param file
+     * @return appender
+     * @throws IOException
+     */
+    public static Appender append(Path file) throws IOException {
+        return new Appender(file);
+    }
+
+    /*
+     * This returns the number of boards in the store
+     *
+     * @return size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /*
+     * This decodes board n from the mapped data
+     *
+     * @param n
+     * @return root
+     * @throws IndexOutOfBoundsException if there is no board n
+     * @throws UncheckedIOException if the data of board n is not a board
+     */
+    public IBlock get(int n) {
+        try {
+            return BoardCodec.read(this.bytes(n));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Board " + n + " is corrupt", e);
+        }
+    }
+
+    /*
+     * This makes board n the board of game
+     *
+     * @param n
+     * @param game
+     */
+    public void load(int n, IGame game) {
+        game.setRoot(this.get(n));
+    }
+
+    /*
+     * This decodes every board in order and passes it to action
+     *
+     * @param action
+     */
+    public void forEach(Consumer<IBlock> action) {
+        for (int n = 0; n < this.size; n++) {
+            action.accept(this.get(n));
+        }
+    }
+
+    /*
+     * This returns a read only view of the encoded bytes of board n
+     *
+     * @param n
+     * @return bytes
+     */
+    ByteBuffer bytes(int n) {
+        if (n < 0 || n >= this.size) {
+            throw new IndexOutOfBoundsException("No board " + n + " in a store of "
+                + this.size);
+        }
+        long start = n == 0 ? 0 : this.ends.get(n - 1);
+        long end = this.ends.get(n);
+        int s = Arrays.binarySearch(this.segmentStarts, start);
+        if (s < 0) {
+            s = -s - 2;
+        }
+        int offset = (int) (start - this.segmentStarts[s]);
+        return this.segments[s].asReadOnlyBuffer()
+            .position(offset).limit(offset + (int) (end - start)).slice();
+    }
+
+    /*
+     * The mappings are released by the garbage collector once the store
+     * and the buffers it handed out are gone; there is nothing to close
+     */
+    @Override
+    public void close() {
+    }
+
+    static Path indexOf(Path file) {
+        return file.resolveSibling(file.getFileName() + INDEX_SUFFIX);
+    }
+
+    private static long[] grow(long[] array, int count) {
+        return count < array.length ? array : Arrays.copyOf(array, 2 * count);
+    }
+
+    /**
+     * Appends boards to a store. Boards and index entries are buffered and
+     * reach the files on flush() and close(), data first; each flush forces
+     * the data to the device before it writes the index, one fsync per
+     * flush rather than per board.
+     */
+    public static final class Appender implements Closeable, Flushable {
+        private static final int INDEX_BUFFER = 1024;
+
+        private final FileChannel data;
+        private final FileChannel index;
+        private final OutputStream out;
+        private final ByteArrayOutputStream board = new ByteArrayOutputStream();
+        private final ByteBuffer pending = ByteBuffer.allocate(INDEX_BUFFER * Long.BYTES);
+        private long end;
+        private int size;
+
+        private Appender(Path file) throws IOException {
+            this.index = FileChannel.open(indexOf(file), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.data = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+            try {
+                //Drop a partly written index entry and any unindexed data
+                long entries = this.index.size() / Long.BYTES;
+                if (entries > 0) {
+                    ByteBuffer last = ByteBuffer.allocate(Long.BYTES);
+                    this.index.read(last, (entries - 1) * Long.BYTES);
+                    this.end = last.getLong(0);
+                }
+                if (this.end > this.data.size()) {
+                    throw new StreamCorruptedException("The index of " + file
+                        + " points past the end of its data");
+                }
+                this.size = (int) entries;
+                this.index.truncate(entries * Long.BYTES);
+                this.index.position(entries * Long.BYTES);
+                this.data.truncate(this.end);
+                this.data.position(this.end);
+            }
+            catch (IOException e) {
+                this.index.close();
+                this.data.close();
+                throw e;
+            }
+            this.out = new BufferedOutputStream(Channels.newOutputStream(this.data),
+                1 << 16);
+        }
+
+        /*
+         * This appends the board under root and returns its number
+         *
+         * @param root
+         * @return n
+         * @throws IOException
+         */
+        public int append(IBlock root) throws IOException {
+            this.board.reset();
+            BoardCodec.write(root, this.board);
+            this.board.writeTo(this.out);
+            this.end += this.board.size();
+            if (!this.pending.hasRemaining()) {
+                this.flush();
+            }
+            this.pending.putLong(this.end);
+            return this.size++;
+        }
+
+        /*
+         * This returns the number of boards in the store, appended ones
+         * included
+         *
+         * @return size
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /*
+         * This writes the buffered boards and forces them to the device,
+         * then writes their index entries
+         *
+         * @throws IOException
+         */
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+            if (this.pending.position() == 0) {
+                return;
+            }
+            //Without this the index may reach the disk before the data it
+            //points to, and a power loss leaves entries over garbage
+            this.data.force(false);
+            this.pending.flip();
+            while (this.pending.hasRemaining()) {
+                this.index.write(this.pending);
+            }
+            this.pending.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.flush();
+            }
+            finally {
+                this.out.close();
+                this.index.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class BoardStoreTest {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("boards");
+        this.file = this.dir.resolve("corpus.boards");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(BoardStore.indexOf(this.file));
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.dir);
+    }
+
+    /*
+     * This checks that boards come back by number and in a scan, across
+     * two sessions of appends and with the data mapped in small segments
+     */
+    @Test
+    public void appendAndRead() throws IOException {
+        List<IBlock> boards = new ArrayList<>();
+        try (BoardStore.Appender out = BoardStore.append(this.file)) {
+            for (int i = 0; i < 150; i++) {
+                boards.add(new Game(i % 6, Color.red, i).getRoot());
+                assertEquals(i, out.append(boards.get(i)));
+            }
+        }
+        try (BoardStore.Appender out = BoardStore.append(this.file)) {
+            assertEquals(150, out.size());
+            for (int i = 150; i < 200; i++) {
+                boards.add(new Game(4, Color.red, i).getRoot());
+                assertEquals(i, out.append(boards.get(i)));
+            }
+        }
+
+        for (long segment : new long[] { Integer.MAX_VALUE, 2000, 700 }) {
+            try (BoardStore store = BoardStore.open(this.file, segment)) {
+                assertEquals(200, store.size());
+                for (int n = 199; n >= 0; n -= 7) {
+                    assertArrayEquals(Zobrist.hashes(boards.get(n)),
+                        Zobrist.hashes(store.get(n)));
+                }
+                AtomicInteger n = new AtomicInteger();
+                store.forEach(root -> assertArrayEquals(
+                    Zobrist.hashes(boards.get(n.getAndIncrement())),
+                    Zobrist.hashes(root)));
+                assertEquals(200, n.get());
+            }
+        }
+
+        try (BoardStore store = BoardStore.open(this.file)) {
+            Game game = new Game(4, Color.red);
+            store.load(199, game);
+            assertEquals(new Game(4, Color.red, 199).perimeter_score(),
+                game.perimeter_score());
+            try {
+                store.get(200);
+                fail();
+            }
+            catch (IndexOutOfBoundsException e) {
+                //expected
+            }
+        }
+    }
+
+    /*
+     * This checks that data and index entries cut short by a crash are
+     * dropped by the next append
+     */
+    @Test
+    public void recoversFromTornWrite() throws IOException {
+        IBlock first = new Game(3, Color.red, 1L).getRoot();
+        IBlock second = new Game(3, Color.red, 2L).getRoot();
+        try (BoardStore.Appender out = BoardStore.append(this.file)) {
+            out.append(first);
+        }
+        Files.write(this.file, new byte[] { 7, 7, 7 }, StandardOpenOption.APPEND);
+        Files.write(BoardStore.indexOf(this.file), new byte[] { 0, 0, 0 },
+            StandardOpenOption.APPEND);
+        try (BoardStore store = BoardStore.open(this.file)) {
+            assertEquals(1, store.size());
+        }
+
+        try (BoardStore.Appender out = BoardStore.append(this.file)) {
+            assertEquals(1, out.append(second));
+        }
+        try (BoardStore store = BoardStore.open(this.file)) {
+            assertEquals(2, store.size());
+            assertEquals(first, store.get(0));
+            assertArrayEquals(Zobrist.hashes(second), Zobrist.hashes(store.get(1)));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.awt.Color;
+import java.util.Objects;
+
+/**
+ * An unchanging copy of a block, as drawn by {@link Squares}
+ *
+ * @author ericfouh
+ */
+class ColoredBlock {
+    private static final ColoredBlock BLANK = new ColoredBlock(null, null);
+
+    private final Color          col;
+    private final ColoredBlock[] children;
+
+
+    /**
+     * @param col
+     * @param children
+     */
+    private ColoredBlock(Color col, ColoredBlock[] children) {
+        this.col = col;
+        this.children = children;
+    }
+
+
+    /**
+     * Copies the tree under block, reusing the subtrees of old that are
+     * the same
+     * @param block the block to copy, null for a blank leaf
+     * @param old the copy of the block drawn before in the same place, or
+     *            null
+     * @return old if nothing under block changed, else the copy
+     */
+    static ColoredBlock of(IBlock block, ColoredBlock old) {
+        if (block == null || block.isleaf()) {
+            Color c = block == null ? null : block.getColor();
+            if (old != null && old.isLeaf() && Objects.equals(old.col, c)) {
+                return old;
+            }
+            return c == null ? BLANK : new ColoredBlock(c, null);
+        }
+        ColoredBlock[] copies = null;
+        for (int i = 0; i < 4; i++) {
+            ColoredBlock prev = old == null || old.isLeaf() ? null : old.children[i];
+            ColoredBlock copy = of(block.getChild(i), prev);
+            if (copies == null && copy != prev) {
+                copies = new ColoredBlock[4];
+                for (int j = 0; j < i; j++) {
+                    copies[j] = old.children[j];
+                }
+            }
+            if (copies != null) {
+                copies[i] = copy;
+            }
+        }
+        return copies == null ? old : new ColoredBlock(null, copies);
+    }
+
+
+    /**
+     * @return whether the block is a leaf
+     */
+    public boolean isLeaf() {
+        return this.children == null;
+    }
+
+
+    /**
+     * @param i
+     * @return the child i, in the order of IBlock.getChild
+     */
+    public ColoredBlock getChild(int i) {
+        return this.children[i];
+    }
+
+
+    /**
+     * @return the col
+     */
+    public Color getColor() {
+        return this.col;
+    }
+
+}
@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One step of the parallel {@link Game#flatten()}. A task paints the leaves
+ * under one block into the grid; a block that spans more than THRESHOLD
+ * cells per side is split into one task per quadrant instead. Quadrants
+ * cover disjoint cells, so the tasks share the grid without locking and the
+ * result is the same grid the sequential paint builds.
+ *
+ * @author Daniel Xu
+ */
+class FlattenTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    //Blocks up to THRESHOLD x THRESHOLD cells are painted by one task
+    static final int THRESHOLD = 64;
+
+    private final IBlock[][] grid;
+    private final IBlock block;
+    private final int x;
+    private final int y;
+    private final int side;
+    private final int unitS;
+
+    /*
+     * This constructs the task that paints block, whose top left corner is
+     * (x, y), into grid
+     *
+     * @param grid
+     * @param block
+     * @param x
+     * @param y
+     * @param side
+     * @param unitS
+     */
+    FlattenTask(IBlock[][] grid, IBlock block, int x, int y, int side,
+        int unitS) {
+        this.grid = grid;
+        this.block = block;
+        this.x = x;
+        this.y = y;
+        this.side = side;
+        this.unitS = unitS;
+    }
+
+    @Override
+    protected void compute() {
+        if (this.block.isleaf()) {
+            Game.fill(this.grid, this.block, this.x, this.y, this.side,
+                this.unitS);
+            return;
+        }
+        if (this.side / this.unitS <= THRESHOLD) {
+            Game.paint(this.grid, this.block, this.x, this.y, this.side,
+                this.unitS);
+            return;
+        }
+        int half = this.side / 2;
+        FlattenTask[] subTasks = new FlattenTask[4];
+        int count = 0;
+        for (int i = 0; i < 4; i++) {
+            IBlock sub = this.block.getChild(i);
+            if (Game.storesBounds(sub)) {
+                Point topLeft = sub.getTopLeft();
+                subTasks[count++] = new FlattenTask(this.grid, sub,
+                    topLeft.getX(), topLeft.getY(),
+                    sub.getBotRight().getX() - topLeft.getX(), this.unitS);
+            }
+            else if (sub != null) {
+                subTasks[count++] = new FlattenTask(this.grid, sub,
+                    this.x + Game.subX(i, half), this.y + Game.subY(i, half),
+                    half, this.unitS);
+            }
+        }
+        invokeAll(count == 4 ? subTasks : Arrays.copyOf(subTasks, count));
+    }
+}
@@ -1,8 +1,7 @@
 import java.awt.Color;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author Daniel Xu
@@ -14,6 +13,91 @@ public class Game implements IGame {
     private IBlock root;
     private Color target;
     private IBlock[][] gameGrid;
+    private boolean implicitGeometry;
+    private SplittableRandom random;
+    private final BlockIndex index = new BlockIndex();
+    private final List<IBlock> dirty = new ArrayList<>();
+    private boolean gridStale = true;
+    private boolean parallelFlatten;
+
+    //Colors currently on the four edges of the board and their score
+    private Color[] topEdge;
+    private Color[] botEdge;
+    private Color[] leftEdge;
+    private Color[] rightEdge;
+    private int score;
+    private final List<IBlock> scoreDirty = new ArrayList<>();
+    private boolean scoreStale = true;
+
+    //Regions of the target color for blob_score()
+    private BlobScorer blobs;
+    private final List<IBlock> blobDirty = new ArrayList<>();
+    private boolean blobStale = true;
+
+    private static final int MAX_DIRTY = 64;
+
+    //Latest published version of the board, null unless publishing
+    private volatile PersistentBoard version;
+    private boolean publishing;
+
+    /*
+     * Lets MoveBatch make moves on this game
+     */
+    private final MoveBatch.Board batch = new MoveBatch.Board() {
+        @Override
+        public Block block(int id) {
+            return (Block) Game.this.getBlock(id);
+        }
+
+        @Override
+        public IBlock root() {
+            return Game.this.root;
+        }
+
+        @Override
+        public int maxDepth() {
+            return Game.this.max_depth;
+        }
+
+        @Override
+        public void swap(int x, int y) {
+            Game.this.swap(x, y);
+        }
+    };
+
+    /*
+     * Keeps the derived state of the game in step with smash() and
+     * rotate() calls made directly on the blocks of this game
+     */
+    private final BlockListener changes = new BlockListener() {
+        @Override
+        public void blockSmashed(IBlock block) {
+            Game.this.index.smashed(block);
+            Game.this.markDirty(block);
+            if (Game.this.version != null) {
+                Game.this.republish(block);
+            }
+        }
+
+        @Override
+        public void blockRotated(IBlock block) {
+            Game.this.moved(block);
+            Game.this.markDirty(block);
+            int[] path = Game.this.version == null ? null
+                : Game.this.pathOf(block);
+            if (path != null) {
+                Game.this.publish(Game.this.version.rotateAt(path));
+            }
+        }
+
+        @Override
+        public void blockRecolored(IBlock block) {
+            Game.this.markDirty(block);
+            if (Game.this.version != null) {
+                Game.this.republish(block);
+            }
+        }
+    };
 
 
     public static final Color[] COLORS = 
@@ -29,11 +113,56 @@ public class Game implements IGame {
      * @param target
      */
     Game(int maxDepth, Color target) {
+        this(maxDepth, target, false);
+    }
+
+    /*
+     * This method constructs the game with max_depth and color that will be used
+     * to count the points. With implicitGeometry the blocks derive their
+     * points from their position in the tree instead of storing them, which
+     * makes rotate() and swap() O(1), the next getBlock() pays O(n) to
+     * index the ids again (see setImplicitGeometry()).
+     * 
+     * @param max_depth
+     * @param target
+     * @param implicitGeometry
+     */
+    Game(int maxDepth, Color target, boolean implicitGeometry) {
         this.max_depth = maxDepth;
         this.target = target;
+        this.implicitGeometry = implicitGeometry;
         this.root = random_init();
     }
 
+    /*
+     * This method constructs the game with max_depth and color that will be used
+     * to count the points, on the board random_init(seed) generates. The same
+     * seed always gives the same board.
+     * 
+     * @param max_depth
+     * @param target
+     * @param seed
+     */
+    Game(int maxDepth, Color target, long seed) {
+        this(maxDepth, target, seed, false);
+    }
+
+    /*
+     * Same as Game(maxDepth, target, seed), with the board built by
+     * random_init_parallel(seed) when parallel is true. Meant for
+     * generating many large boards up front.
+     * 
+     * @param max_depth
+     * @param target
+     * @param seed
+     * @param parallel
+     */
+    Game(int maxDepth, Color target, long seed, boolean parallel) {
+        this.max_depth = maxDepth;
+        this.target = target;
+        this.root = parallel ? random_init_parallel(seed) : random_init(seed);
+    }
+
     /*
      * This sets the max depth of the game
      */
@@ -53,16 +182,87 @@ public class Game implements IGame {
      */
     @Override
     public IBlock random_init() { 
-        //Set corners
+        return this.generate(new SplittableRandom());
+    }
+
+    /*
+     * Same as random_init(), but every random pick and every color of the
+     * board comes from a SplittableRandom seeded with seed, so the same seed
+     * always gives the same board. The generator is kept for the smashes
+     * made through this game afterwards.
+     * 
+     * @param seed
+     * @return root
+     */
+    public IBlock random_init(long seed) {
+        return this.generate(new SplittableRandom(seed));
+    }
+
+    /*
+     * This builds a random board top down on the common ForkJoinPool instead
+     * of smashing one random block at a time: the root is smashed, then every
+     * quadrant is grown by its own task (see GenerateTask). One random path
+     * from the root is always smashed down to max_depth, any other block is
+     * smashed with probability GenerateTask.SPLIT_CHANCE, so like
+     * random_init() the board reaches max_depth at least once. The work is
+     * linear in the size of the board and spread over all cores.
+     * 
+     * Every quadrant draws from its own split of a SplittableRandom seeded
+     * with seed, so the same seed always gives the same board.
+     * 
+     * @param seed
+     * @return root
+     */
+    public IBlock random_init_parallel(long seed) {
+        int extent = extentFor(this.max_depth);
+        SplittableRandom rand = new SplittableRandom(seed);
+        Block root = new Block(new Point(0, 0), new Point(extent, extent), 0, null);
+        root.setImplicitBounds(this.implicitGeometry);
+        ForkJoinPool.commonPool().invoke(new GenerateTask(root, this.max_depth,
+            true, rand.split(), this.changes));
+        this.random = rand;
+        this.root = root;
+        this.index.reset(root);
+        this.gridStale = true;
+        this.scoreStale = true;
+        this.blobStale = true;
+        this.republish();
+        return root;
+    }
+
+    /*
+     * Same as random_init_parallel(seed) with a random seed
+     * 
+     * @return root
+     */
+    public IBlock random_init_parallel() {
+        return this.random_init_parallel(new SplittableRandom().nextLong());
+    }
+
+    /*
+     * This builds the random board of random_init() from rand
+     * 
+     * @param rand
+     * @return root
+     */
+    private IBlock generate(SplittableRandom rand) {
+        //Set corners, the board grows with max_depth (see extentFor())
+        int extent = extentFor(this.max_depth);
         Point topLeft = new Point(0,0);
-        Point botRight = new Point(8,8);
-        //Init Random
-        Random rand = new Random();
+        Point botRight = new Point(extent, extent);
+        this.random = rand;
 
         //Create block
         Block root = new Block(topLeft, botRight, 0, null);
+        root.setListener(this.changes);
+        root.setImplicitBounds(this.implicitGeometry);
         this.root = root;
-        root.smash(this.max_depth);
+        this.index.reset(root);
+        this.gridStale = true;
+        this.scoreStale = true;
+        this.blobStale = true;
+        this.version = null;
+        root.smash(this.max_depth, rand);
 
         //Block
         int randPickBlock;
@@ -82,60 +282,32 @@ public class Game implements IGame {
 
             //Smash and update depth for exit condition
             if (tmp.depth() < max_depth && tmp.isleaf()) {
-                tmp.smash(this.max_depth);
+                tmp.smash(this.max_depth, rand);
 
                 upperBound += 4;
                 checkDepth = tmp.depth() + 1;
             } 
         }
+        this.republish();
         return this.root;
     }
 
 
     /*
      * This method will get a block as a certain location determined
-     * during the BFS traversal. This method will then return the block
-     * at the position chosen by the user
+     * during the BFS traversal. The ids are kept in a BlockIndex that is
+     * patched in place as blocks are smashed, rotated and swapped, so a
+     * lookup costs O(depth) (finding the level) instead of a BFS per call.
+     * The patching is not free: a smash shifts the level below it and its
+     * child starts, O(level size), and a rotate or swap re-orders the
+     * ranges under the moved blocks on every lower level.
      * 
      * @param pos 
      * @return IBlock
      */
     @Override
     public IBlock getBlock(int pos) {
-        //Deque 10-12 lines
-        List<IBlock> container = new ArrayList<>();
-        ArrayDeque<IBlock> newQ = new ArrayDeque<>();
-
-        if (this.getRoot() != null) {
-            newQ.offer(this.getRoot());
-        }
-
-        //Adds until is empty
-        while (!newQ.isEmpty()) {
-            IBlock root = newQ.poll();
-            if (root != null) {
-                container.add(root);
-                if (root.getTopLeftTree() != null) {
-                    //NW
-                    newQ.offer(root.getTopLeftTree());
-                }
-                if (root.getTopRightTree() != null) {
-                    //NE
-                    newQ.offer(root.getTopRightTree());
-                }
-                if (root.getBotRightTree() != null) {
-                    //SE
-                    newQ.offer(root.getBotRightTree());
-                }
-                if (root.getBotLeftTree() != null) {
-                    //SW
-                    newQ.offer(root.getBotLeftTree());
-                }
-            }
-        }
-        //int index = pos;
-        int index = pos;
-        return container.get(index);
+        return this.index.get(pos);
     }
 
     /*
@@ -187,15 +359,29 @@ public class Game implements IGame {
             blockOne = blockTwo;
             blockTwo = tmp; 
 
-            //Update topLeft/botRight
-            blockOne.setTopLeft(oneTL);
-            blockOne.setBotRight(oneBR);
-            blockTwo.setTopLeft(twoTL);
-            blockTwo.setBotRight(twoBR);
+            //Update topLeft/botRight, implicit bounds follow the new slots
+            if (!blockOne.hasImplicitBounds()) {
+                blockOne.setTopLeft(oneTL);
+                blockOne.setBotRight(oneBR);
+                blockTwo.setTopLeft(twoTL);
+                blockTwo.setBotRight(twoBR);
+
+                //Call recursive method 
+                blockOne.updateXY(blockOne, blockOne.getTopLeft(), blockOne.getBotRight());
+                blockTwo.updateXY(blockTwo, blockTwo.getTopLeft(), blockTwo.getBotRight());
+            }
 
-            //Call recursive method 
-            blockOne.updateXY(blockOne, blockOne.getTopLeft(), blockOne.getBotRight());
-            blockTwo.updateXY(blockTwo, blockTwo.getTopLeft(), blockTwo.getBotRight());
+            if (this.implicitGeometry) {
+                this.index.reset(this.root);
+            }
+            else {
+                this.index.swapped(x, y, blockOne.depth());
+            }
+            this.markDirty(blockOne);
+            this.markDirty(blockTwo);
+            if (this.version != null) {
+                this.publish(this.version.swap(x, y));
+            }
         }
     }
 
@@ -232,94 +418,410 @@ public class Game implements IGame {
         }
     }
 
+    /*
+     * This method applies a batch of moves as one step (see IGame.apply()
+     * and MoveBatch): the moves already made are undone when one fails.
+     * 
+     * The grid and the score are brought up to date lazily, so the batch
+     * costs one flatten()/perimeter_score() pass at the end however many
+     * moves it holds.
+     * 
+     * @param moves
+     */
+    @Override
+    public void apply(List<Move> moves) {
+        MoveBatch.apply(this.batch, moves);
+    }
+
     /*
      * This method essentially makes a 2d grid that is dependent on the max_depth as
      * the lengths (horizontal/vertical) are determined by 2^{max_depth}.
-     * Then to fit the actual grid, we must divide 8 (of (8,8) size grid) 
+     * Then to fit the actual grid, we must divide the size of the root
      * by the 2^{max_depth} to appropriately fit the coordinates of each block. 
      * 
      * i.e. if the max depth is 2 then 2^2 = 4. The actual block coordinates 
-     * (from 0,0 to 8,8) need to be divided by 4 or (8/4) to fit the matrix of
+     * (from 0,0 to 8,8) need to be divided by 2 or (8/4) to fit the matrix of
      * a 4x4 grid. 
      * 
-     * This method also does a BFS traversal to add each respective children node in
-     * BFS order onto the grid, using a queue to store each following level of children nodes. 
+     * The grid has 4^{max_depth} cells, so past depth 13 or so it no longer
+     * fits in memory; perimeter_score() does not need it at any depth.
      * 
-     * Then, it finally returns a IBlock[][] 2d array with blocks stored at each cell of the 
-     * 2d array. 
+     * The grid is kept between calls. Blocks that were smashed, rotated,
+     * swapped or recolored since the last call are recorded as dirty and only
+     * their cells are rewritten, so an unchanged board returns the same array
+     * without walking the tree. The whole grid is only repainted after a new
+     * root, a new max depth or a long run of changes.
      * 
      * @return grid 
      */
     @Override
     public IBlock[][] flatten() {
-        int gridSize = (int) Math.pow(2, this.max_depth);
-        //Match 8x8 grid and change size depending on the gridSize
-        int unitS = 8 / gridSize;
- 
+        int gridSize = 1 << this.max_depth;
+        //Match the root and change size depending on the gridSize
+        int unitS = this.unitSize(gridSize);
 
-        IBlock[][] grid = new IBlock[gridSize][gridSize];
-//        IBlock curBlock;
+        if (this.gameGrid == null || this.gameGrid.length != gridSize) {
+            this.gameGrid = new IBlock[gridSize][gridSize];
+            this.gridStale = true;
+        }
 
-        ArrayDeque<IBlock> newQ = new ArrayDeque<IBlock>();
-        if (this.getRoot() != null) {
-            newQ.offer(this.getRoot());
+        if (this.gridStale) {
+            this.paint(this.getRoot(), unitS, true);
+        }
+        else {
+            for (IBlock block : this.dirty) {
+                this.paint(block, unitS, false);
+            }
         }
+        this.dirty.clear();
+        this.gridStale = false;
+        return this.gameGrid;
+    }
 
-        while (!newQ.isEmpty()) {
-            IBlock curBlock = newQ.poll();
+    /*
+     * This returns how many units of the root one grid cell spans
+     * 
+     * @param gridSize
+     * @return unitS
+     */
+    private int unitSize(int gridSize) {
+        IBlock board = this.getRoot();
+        int extent = board == null ? extentFor(this.max_depth)
+            : board.getBotRight().getX() - board.getTopLeft().getX();
+        int unitS = extent / gridSize;
+        if (unitS == 0) {
+            throw new IllegalStateException("A root of size " + extent
+                + " is too small for a board of max depth " + this.max_depth);
+        }
+        return unitS;
+    }
 
-            //Put into grid
-            if (curBlock.isleaf()) {
-                for (int i = curBlock.getTopLeft().getY(); i < curBlock.getBotRight().getY(); i++) {
-                    for (int j = curBlock.getTopLeft().getX(); 
-                            j < curBlock.getBotRight().getX(); j++) {
-                        grid[i / unitS][j / unitS] = curBlock;
-                    }
-                }
+    /*
+     * This returns the size of the root block for a board of the given
+     * max depth: 8 like the original (0,0)-(8,8) board, or 2^{maxDepth} once
+     * that is larger, so a unit cell never shrinks below one unit.
+     * 
+     * @param maxDepth
+     * @return extent
+     */
+    static int extentFor(int maxDepth) {
+        return Math.max(8, 1 << maxDepth);
+    }
+
+    /*
+     * This writes the leaves under block into the cells they cover. With
+     * parallel flatten on, a full repaint is split over the ForkJoinPool
+     * (see FlattenTask), changed blocks are always painted here.
+     * 
+     * @param block
+     * @param unitS
+     * @param full
+     */
+    private void paint(IBlock block, int unitS, boolean full) {
+        if (block == null) {
+            return;
+        }
+        Point topLeft = block.getTopLeft();
+        int side = block.getBotRight().getX() - topLeft.getX();
+        if (full && this.parallelFlatten) {
+            ForkJoinPool.commonPool().invoke(new FlattenTask(this.gameGrid,
+                block, topLeft.getX(), topLeft.getY(), side, unitS));
+        }
+        else {
+            paint(this.gameGrid, block, topLeft.getX(), topLeft.getY(), side,
+                unitS);
+        }
+    }
+
+    /*
+     * This writes the leaves under block, whose top left corner is (x, y),
+     * into the cells of grid they cover. The bounds are carried down so that
+     * blocks with implicit bounds never have to walk back up to their root.
+     * 
+     * @param grid
+     * @param block
+     * @param x
+     * @param y
+     * @param side
+     * @param unitS
+     */
+    static void paint(IBlock[][] grid, IBlock block, int x, int y, int side,
+        int unitS) {
+        if (block.isleaf()) {
+            fill(grid, block, x, y, side, unitS);
+            return;
+        }
+        int half = side / 2;
+        for (int i = 0; i < 4; i++) {
+            IBlock sub = block.getChild(i);
+            if (storesBounds(sub)) {
+                Point topLeft = sub.getTopLeft();
+                paint(grid, sub, topLeft.getX(), topLeft.getY(),
+                    sub.getBotRight().getX() - topLeft.getX(), unitS);
+            }
+            else if (sub != null) {
+                paint(grid, sub, x + subX(i, half), y + subY(i, half), half, unitS);
+            }
+        }
+    }
+
+    /*
+     * This writes leaf into every cell of grid it covers
+     */
+    static void fill(IBlock[][] grid, IBlock leaf, int x, int y, int side,
+        int unitS) {
+        for (int i = y / unitS; i < (y + side) / unitS; i++) {
+            Arrays.fill(grid[i], x / unitS, (x + side) / unitS, leaf);
+        }
+    }
+
+    /*
+     * This returns how far right of its parent the sub block at index i
+     * (children() order) starts
+     */
+    static int subX(int i, int half) {
+        return i == 1 || i == 2 ? half : 0;
+    }
+
+    /*
+     * This returns how far below its parent the sub block at index i
+     * (children() order) starts
+     */
+    static int subY(int i, int half) {
+        return i >= 2 ? half : 0;
+    }
+
+    /*
+     * This checks if block keeps its own points, which then win over the
+     * bounds derived from its slot
+     * 
+     * @param block
+     * @return boolean
+     */
+    static boolean storesBounds(IBlock block) {
+        return block != null
+            && !(block instanceof Block && ((Block) block).hasImplicitBounds());
+    }
+
+    /*
+     * This keeps the id index in step with a rotate of block: re-ordered
+     * with stored points, dropped with derived points (see
+     * setImplicitGeometry())
+     * 
+     * @param block
+     */
+    private void moved(IBlock block) {
+        if (this.implicitGeometry) {
+            this.index.reset(this.root);
+        }
+        else {
+            this.index.rotated(block);
+        }
+    }
 
+    /*
+     * This records that the cells covered by block must be rewritten by
+     * the next flatten(). Past MAX_DIRTY blocks a full repaint is cheaper.
+     * 
+     * @param block
+     */
+    private void markDirty(IBlock block) {
+        if (!this.gridStale) {
+            if (this.dirty.size() == MAX_DIRTY) {
+                this.dirty.clear();
+                this.gridStale = true;
+            }
+            else {
+                this.dirty.add(block);
+            }
+        }
+        if (!this.scoreStale) {
+            if (this.scoreDirty.size() == MAX_DIRTY) {
+                this.scoreDirty.clear();
+                this.scoreStale = true;
+            }
+            else {
+                this.scoreDirty.add(block);
+            }
+        }
+        if (!this.blobStale) {
+            if (this.blobDirty.size() == MAX_DIRTY) {
+                this.blobDirty.clear();
+                this.blobStale = true;
+            }
+            else {
+                this.blobDirty.add(block);
             }
-            newQ.addAll(curBlock.children());
         }
-        this.setGrid(grid);  
-        return grid;
     }
 
     /*
-     * This method will score the perimeter of 2d grid returned by
-     * flatten() method. This essentially scores all 4 exterior lengths of the
-     * grid in one forloop and returns the points of the current game grid. 
+     * This method will score the perimeter of the board. This essentially
+     * scores all 4 exterior lengths of the grid and returns the points of
+     * the current game grid. 
      * 
      * The point is determined with a block of a certain color exists at the 
      * exterior of the 2d array returned from flatten().
      * 
+     * The score is kept as a running value together with the color of every
+     * border cell. Only the border cells under blocks that changed since the
+     * last call are looked at again, and each one moves the score by the
+     * difference it makes, so reading an unchanged score is O(1).
+     * 
      * @param gamePoints
      */
     @Override
     public int perimeter_score() {
-        Color gameColor = this.target;
-        IBlock[][] grid = this.flatten();
-        int gamePoints = 0;
+        int gridSize = 1 << this.max_depth;
+        int unitS = this.unitSize(gridSize);
 
-        //Calculate gamePoints
-        for (int i = 0; i < this.getGrid().length; i++) {
-            //Top Horizontal
-            if (grid[0][i].getColor() == gameColor) {
-                gamePoints++;
+        if (this.topEdge == null || this.topEdge.length != gridSize) {
+            this.topEdge = new Color[gridSize];
+            this.botEdge = new Color[gridSize];
+            this.leftEdge = new Color[gridSize];
+            this.rightEdge = new Color[gridSize];
+            this.scoreStale = true;
+        }
+
+        if (this.scoreStale) {
+            Arrays.fill(this.topEdge, null);
+            Arrays.fill(this.botEdge, null);
+            Arrays.fill(this.leftEdge, null);
+            Arrays.fill(this.rightEdge, null);
+            this.score = 0;
+            this.rescore(this.getRoot(), unitS);
+        }
+        else {
+            for (IBlock block : this.scoreDirty) {
+                this.rescore(block, unitS);
+            }
+        }
+        this.scoreDirty.clear();
+        this.scoreStale = false;
+        return this.score;
+    }
+
+    /*
+     * This rewrites the border cells covered by the leaves under block.
+     * Sub blocks that do not touch an edge of the board are skipped.
+     * 
+     * @param block
+     * @param unitS
+     */
+    private void rescore(IBlock block, int unitS) {
+        if (block != null) {
+            Point topLeft = block.getTopLeft();
+            this.rescore(block, topLeft.getX(), topLeft.getY(),
+                block.getBotRight().getX() - topLeft.getX(), unitS);
+        }
+    }
+
+    /*
+     * Same as rescore(block, unitS) for a block whose top left corner is
+     * (x, y)
+     */
+    private void rescore(IBlock block, int x, int y, int side, int unitS) {
+        int gridSize = this.topEdge.length;
+        int left = x / unitS;
+        int top = y / unitS;
+        int right = (x + side) / unitS;
+        int bottom = (y + side) / unitS;
+        boolean onTop = top == 0;
+        boolean onBot = bottom == gridSize;
+        boolean onLeft = left == 0;
+        boolean onRight = right == gridSize;
+        if (!(onTop || onBot || onLeft || onRight)) {
+            return;
+        }
+
+        if (block.isleaf()) {
+            Color c = block.getColor();
+            for (int i = left; i < right; i++) {
+                if (onTop) {
+                    this.setEdge(this.topEdge, i, c);
+                }
+                if (onBot) {
+                    this.setEdge(this.botEdge, i, c);
+                }
+            }
+            for (int i = top; i < bottom; i++) {
+                if (onLeft) {
+                    this.setEdge(this.leftEdge, i, c);
+                }
+                if (onRight) {
+                    this.setEdge(this.rightEdge, i, c);
+                }
             }
-            //Bot Horizontal
-            if (grid[grid.length - 1][i].getColor() == gameColor) {
-                gamePoints++;
+            return;
+        }
+        int half = side / 2;
+        for (int i = 0; i < 4; i++) {
+            IBlock sub = block.getChild(i);
+            if (storesBounds(sub)) {
+                this.rescore(sub, unitS);
             }
-            //Left Vertical
-            if (grid[i][0].getColor() == gameColor) {
-                gamePoints++;
+            else if (sub != null) {
+                this.rescore(sub, x + subX(i, half), y + subY(i, half), half, unitS);
             }
-            //Right Horizontal
-            if (grid[i][grid.length - 1].getColor() == gameColor) {
-                gamePoints++;
+        }
+    }
+
+    /*
+     * This stores the color of one border cell and applies the change it
+     * makes to the running score
+     * 
+     * @param edge
+     * @param i
+     * @param c
+     */
+    private void setEdge(Color[] edge, int i, Color c) {
+        if (edge[i] == this.target) {
+            this.score--;
+        }
+        if (c == this.target) {
+            this.score++;
+        }
+        edge[i] = c;
+    }
+
+    /*
+     * This method scores the largest blob: the number of unit cells in the
+     * largest connected region of the target color in the grid returned
+     * from flatten().
+     * 
+     * The regions are kept between calls in a union-find (see BlobScorer).
+     * Only the regions under or next to blocks that changed since the last
+     * call are taken apart and joined again, so a move does not cost a
+     * flood fill of the whole grid.
+     * 
+     * @return score
+     */
+    @Override
+    public int blob_score() {
+        IBlock[][] grid = this.flatten();
+        int gridSize = grid.length;
+        int unitS = this.unitSize(gridSize);
+
+        if (this.blobs == null || this.blobs.gridSize() != gridSize) {
+            this.blobs = new BlobScorer(gridSize, this.target);
+            this.blobStale = true;
+        }
+
+        if (this.blobStale) {
+            this.blobs.rebuild(grid);
+        }
+        else {
+            for (IBlock block : this.blobDirty) {
+                Point topLeft = block.getTopLeft();
+                Point botRight = block.getBotRight();
+                this.blobs.update(grid, topLeft.getY() / unitS,
+                    topLeft.getX() / unitS, botRight.getY() / unitS,
+                    botRight.getX() / unitS);
             }
         }
-        return gamePoints;
+        this.blobDirty.clear();
+        this.blobStale = false;
+        return this.blobs.largest();
     }
 
     /*
@@ -330,8 +832,218 @@ public class Game implements IGame {
     @Override
     public void setRoot(IBlock root) {
         this.root = root;
+        this.listenTo(root);
+        if (root instanceof Block) {
+            ((Block) root).setImplicitBounds(this.implicitGeometry);
+        }
+        this.index.reset(root);
+        this.gridStale = true;
+        this.scoreStale = true;
+        this.blobStale = true;
+        this.republish();
+    }
+
+    /*
+     * This attaches the change listener of this game to every block
+     * of the tree, so direct smash()/rotate() calls keep the index current
+     * 
+     * @param block
+     */
+    private void listenTo(IBlock block) {
+        if (block instanceof Block) {
+            ((Block) block).setListener(this.changes);
+        }
+        if (block != null && !block.isleaf()) {
+            for (int i = 0; i < 4; i++) {
+                this.listenTo(block.getChild(i));
+            }
+        }
+    }
+
+
+    /*
+     * This method switches the blocks of the game between stored points
+     * (rotate() and swap() rewrite the points of every moved block) and
+     * points derived from the position of each block in the tree (rotate()
+     * and swap() only move pointers, getTopLeft()/getBotRight() cost
+     * O(depth)). With derived points a rotate or swap drops the id index
+     * instead of re-ordering every level under the moved blocks, so it
+     * stays O(1) however large they are; the next getBlock() builds the
+     * index again in O(n). Stored points suit batches that look up ids
+     * between moves, derived points many moves per lookup.
+     * 
+     * @param implicit
+     */
+    public void setImplicitGeometry(boolean implicit) {
+        this.implicitGeometry = implicit;
+        if (this.root instanceof Block) {
+            ((Block) this.root).setImplicitBounds(implicit);
+        }
+    }
+
+    /*
+     * This method turns the parallel flatten on or off. When on, a full
+     * repaint of the grid splits the board by quadrant over the common
+     * ForkJoinPool; the four quadrants of a block cover disjoint cells, so
+     * the tasks never write the same cell and the grid is exactly the one
+     * the sequential path builds. Worth it from depth 10 or so, on small
+     * boards the tasks cost more than the painting.
+     * 
+     * @param parallel
+     */
+    public void setParallelFlatten(boolean parallel) {
+        this.parallelFlatten = parallel;
+    }
+
+    /*
+     * This method returns true if full repaints run on the ForkJoinPool
+     * 
+     * @return parallelFlatten
+     */
+    public boolean isParallelFlatten() {
+        return this.parallelFlatten;
+    }
+
+    /*
+     * This method turns publishing on or off. While on, the game keeps an
+     * immutable copy of the board (a PersistentBoard) in step with every
+     * change: each move or change made through a block of this game path
+     * copies the O(depth) nodes it touches and publishes the new version
+     * with one volatile write. Other threads read the board through
+     * snapshot() and never block the move thread or see a half made move,
+     * e.g. coordinates in the middle of updateXY(). Moves themselves are
+     * still made from one thread.
+     * 
+     * The copy needs colors from the palette.
+     * 
+     * @param on
+     */
+    public void setPublishing(boolean on) {
+        this.publishing = on;
+        this.version = null;
+        this.republish();
+    }
+
+    /*
+     * This method returns true if the game publishes snapshots
+     * 
+     * @return publishing
+     */
+    public boolean isPublishing() {
+        return this.publishing;
+    }
+
+    /*
+     * This method returns an immutable copy of the board as it was after
+     * the last complete move. flatten() and perimeterScore() of the copy
+     * always agree with each other, whatever the move thread does. With
+     * publishing on this is a volatile read that any thread can make,
+     * otherwise a fresh O(n) copy is made, which is only safe from the
+     * move thread.
+     * 
+     * @return board
+     */
+    public PersistentBoard snapshot() {
+        PersistentBoard published = this.version;
+        if (published != null) {
+            return published;
+        }
+        return PersistentBoard.of(this.root, this.max_depth, this.target);
+    }
+
+    /*
+     * This method returns the Zobrist hash of the board (see Zobrist):
+     * the same for every board with the same leaves, depths and colors in
+     * the same places. With publishing on it is kept up to date by every
+     * change in O(depth), otherwise it is computed from a copy.
+     * 
+     * @return hash
+     */
+    public long zobristHash() {
+        return this.snapshot().hash();
+    }
+
+    /*
+     * This method returns a hash that is the same for the four boards
+     * that only differ by rotations of the root
+     * 
+     * @return canonical hash
+     */
+    public long canonicalHash() {
+        return this.snapshot().canonicalHash();
+    }
+
+    /*
+     * This rebuilds the published version from the whole tree, after a
+     * new root or max depth
+     */
+    private void republish() {
+        this.version = this.publishing && this.root != null
+            ? PersistentBoard.of(this.root, this.max_depth, this.target)
+            : null;
     }
 
+    private void publish(PersistentBoard next) {
+        this.version = next;
+    }
+
+    /*
+     * This returns the slots from the root of this game down to block, or
+     * null if block is not (yet) linked into the tree, like the new blocks
+     * of a smash while they get their colors
+     * 
+     * @param block
+     * @return path
+     */
+    private int[] pathOf(IBlock block) {
+        int[] path = new int[block.depth()];
+        IBlock cur = block;
+        for (int d = path.length - 1; d >= 0; d--) {
+            IBlock parent = ((Block) cur).getParent();
+            int slot = 0;
+            while (slot < 4 && parent.getChild(slot) != cur) {
+                slot++;
+            }
+            if (slot == 4) {
+                return null;
+            }
+            path[d] = slot;
+            cur = parent;
+        }
+        return cur == this.root ? path : null;
+    }
+
+    /*
+     * This publishes the version after block changed, block and everything
+     * under it is copied again
+     * 
+     * @param block
+     */
+    private void republish(IBlock block) {
+        int[] path = this.pathOf(block);
+        if (path != null) {
+            this.publish(this.version.replaceAt(path, block));
+        }
+    }
+
+    /*
+     * This method returns the generator the board was built from, later
+     * smashes made by the game draw their colors from it too
+     * 
+     * @return random
+     */
+    SplittableRandom getRandom() {
+        return this.random;
+    }
+
+    /*
+     * This method returns true if block points are derived on demand
+     * 
+     * @return implicitGeometry
+     */
+    public boolean isImplicitGeometry() {
+        return this.implicitGeometry;
+    }
 
     /*
      * This method sets the maxDepth of the game
@@ -340,6 +1052,7 @@ public class Game implements IGame {
      */
     public void setMaxDepth(int depth) {
         this.max_depth = depth;
+        this.republish();
     }
     
     /*
@@ -351,6 +1064,15 @@ public class Game implements IGame {
         return this.max_depth;
     }
 
+    /*
+     * This method returns the color that is used to count the points
+     * 
+     * @return target
+     */
+    public Color getTarget() {
+        return this.target;
+    }
+
     /*
      * This method sets the Grid of the game 
      * 
@@ -358,16 +1080,17 @@ public class Game implements IGame {
      */
     public void setGrid(IBlock[][] grid) {
         this.gameGrid = grid;
+        this.gridStale = true;
     }
 
     /*
-     * This method returns the most recent
-     * 2d grid of the current game
+     * This method returns the 2d grid of the current game. The cached
+     * grid is returned as is when nothing changed since the last call.
      * 
      * @return gameGride
      */
     public IBlock[][] getGrid() {
-        return this.gameGrid;
+        return this.flatten();
     }
     
 }
\ No newline at end of file
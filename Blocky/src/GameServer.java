@@ -0,0 +1,301 @@
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts games for clients on the loopback interface. Each connection is a
+ * session with its own games, served by its own virtual thread (or a pooled
+ * thread where the JVM has no virtual threads); sessions share nothing but
+ * the latency statistics, so one session never waits for another.
+ *
+ * The build targets release 14, which has no virtual threads, so there
+ * {@link Tournament#virtualThreads()} returns null and every open
+ * connection holds one platform thread of a cached pool for as long as it
+ * lasts. Thousands of idle sessions are then thousands of parked threads;
+ * the server only scales to the threads the host allows.
+ *
+ * The protocol is one line per request and one line per reply. Ids of
+ * games are local to the session, ids of blocks are BFS ids as in
+ * {@link IGame}. Replies start with OK or ERR:
+ *
+ *   CREATE depth [seed]      OK game
+ *   SWAP game x y            OK
+ *   ROTATE game id           OK
+ *   SMASH game id [seed]     OK seed
+ *   SCORE game [blob]        OK score
+ *   FLATTEN game             OK size cells, one palette index per cell,
+ *                            row after row
+ *   DROP game                OK
+ *   STATS                    OK sessions=n requests=n p50=us p99=us
+ *   QUIT                     BYE, and the connection is closed
+ *
+ * Latencies are measured in the server from a request read to its reply
+ * written. A request that fails in any way gets an ERR reply and is
+ * measured like any other; the session goes on.
+ *
+ * @author Daniel Xu
+ */
+public final class GameServer implements AutoCloseable {
+
+    static final int MAX_DEPTH = 10;
+    private static final int BACKLOG = 4096;
+
+    private final ServerSocket server;
+    private final ExecutorService sessions;
+    private final Thread acceptor;
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private volatile boolean closed;
+
+    /*
+     * This starts a server on port of the loopback interface, 0 for any
+     * free port. Sessions run on virtual threads where the JVM has them,
+     * otherwise (as on release 14) on a cached pool of platform threads.
+     *
+     * @param port
+     * @throws IOException
+     */
+    public GameServer(int port) throws IOException {
+        this.server = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        ExecutorService virtual = Tournament.virtualThreads();
+        this.sessions = virtual != null ? virtual : Executors.newCachedThreadPool();
+        this.acceptor = new Thread(this::accept, "GameServer-accept");
+        this.acceptor.start();
+    }
+
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+
+    /*
+     * This returns the number of open sessions
+     *
+     * @return sessions
+     */
+    public int sessions() {
+        return this.sessionCount.get();
+    }
+
+    /*
+     * This returns the latency that p percent of the requests so far did
+     * not exceed, in nanoseconds
+     *
+     * @param p
+     * @return nanos
+     */
+    public long latency(double p) {
+        return this.latency.percentile(p);
+    }
+
+    /*
+     * This returns the number of requests served
+     *
+     * @return requests
+     */
+    public long requests() {
+        return this.latency.count();
+    }
+
+    /*
+     * This stops accepting connections and closes every session
+     */
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+        this.server.close();
+        for (Socket socket : this.open) {
+            socket.close();
+        }
+        this.sessions.shutdownNow();
+    }
+
+    private void accept() {
+        while (!this.closed) {
+            try {
+                Socket socket = this.server.accept();
+                socket.setTcpNoDelay(true);
+                this.open.add(socket);
+                //close() may have run since accept returned and missed it
+                if (this.closed) {
+                    this.open.remove(socket);
+                    socket.close();
+                    break;
+                }
+                try {
+                    this.sessions.execute(() -> this.serve(socket));
+                }
+                catch (RejectedExecutionException e) {
+                    this.open.remove(socket);
+                    socket.close();
+                }
+            }
+            catch (IOException e) {
+                if (!this.closed) {
+                    System.err.println("GameServer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /*
+     * This answers the requests of one connection until it is closed
+     */
+    private void serve(Socket socket) {
+        this.sessionCount.incrementAndGet();
+        Map<Integer, Game> games = new HashMap<>();
+        int[] nextId = { 1 };
+        try (Socket s = socket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                s.getInputStream(), StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(
+                s.getOutputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                long begin = System.nanoTime();
+                String reply;
+                try {
+                    reply = this.handle(line.trim().split("\\s+"), games, nextId);
+                }
+                catch (RuntimeException e) {
+                    //Whatever a request throws, the client still gets a reply
+                    reply = "ERR " + (e.getMessage() != null ? e.getMessage()
+                        : e.getClass().getSimpleName());
+                }
+                out.write(reply == null ? "BYE" : reply);
+                out.write('\n');
+                out.flush();
+                this.latency.record(System.nanoTime() - begin);
+                if (reply == null) {
+                    break;
+                }
+            }
+        }
+        catch (SocketException e) {
+            //The client went away or the server is closing
+        }
+        catch (IOException e) {
+            if (!this.closed) {
+                System.err.println("GameServer: " + e.getMessage());
+            }
+        }
+        finally {
+            this.open.remove(socket);
+            this.sessionCount.decrementAndGet();
+        }
+    }
+
+    /*
+     * This carries out one request and returns its reply, null for QUIT
+     */
+    private String handle(String[] args, Map<Integer, Game> games, int[] nextId) {
+        switch (args[0].toUpperCase()) {
+            case "CREATE": {
+                int depth = intArg(args, 1);
+                if (depth < 0 || depth > MAX_DEPTH) {
+                    throw new IllegalArgumentException("Depth must be 0 to " + MAX_DEPTH);
+                }
+                Game game = args.length > 2
+                    ? new Game(depth, Color.RED, Long.parseLong(args[2]))
+                    : new Game(depth, Color.RED);
+                int id = nextId[0]++;
+                games.put(id, game);
+                return "OK " + id;
+            }
+            case "SWAP":
+                game(args, games).apply(List.of(Move.swap(intArg(args, 2),
+                    intArg(args, 3))));
+                return "OK";
+            case "ROTATE":
+                game(args, games).apply(List.of(Move.rotate(intArg(args, 2))));
+                return "OK";
+            case "SMASH": {
+                Move move = args.length > 3
+                    ? Move.smash(intArg(args, 2), Long.parseLong(args[3]))
+                    : Move.smash(intArg(args, 2));
+                game(args, games).apply(List.of(move));
+                return "OK " + move.getSeed();
+            }
+            case "SCORE": {
+                Game game = game(args, games);
+                boolean blob = args.length > 2 && args[2].equalsIgnoreCase("blob");
+                return "OK " + (blob ? game.blob_score() : game.perimeter_score());
+            }
+            case "FLATTEN":
+                return "OK " + cells(game(args, games).flatten());
+            case "DROP":
+                if (games.remove(intArg(args, 1)) == null) {
+                    throw new IllegalArgumentException("No game " + args[1]);
+                }
+                return "OK";
+            case "STATS":
+                return String.format("OK sessions=%d requests=%d p50=%.1fus p99=%.1fus",
+                    this.sessions(), this.requests(), this.latency(50) / 1e3,
+                    this.latency(99) / 1e3);
+            case "QUIT":
+                return null;
+            default:
+                throw new IllegalArgumentException("Unknown request " + args[0]);
+        }
+    }
+
+    private static Game game(String[] args, Map<Integer, Game> games) {
+        Game game = games.get(intArg(args, 1));
+        if (game == null) {
+            throw new IllegalArgumentException("No game " + args[1]);
+        }
+        return game;
+    }
+
+    private static int intArg(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing argument to " + args[0]);
+        }
+        return Integer.parseInt(args[i]);
+    }
+
+    /*
+     * This writes the size of grid and the palette index of each cell
+     */
+    static String cells(IBlock[][] grid) {
+        StringBuilder out = new StringBuilder(grid.length * grid.length + 8);
+        out.append(grid.length).append(' ');
+        for (IBlock[] row : grid) {
+            for (IBlock cell : row) {
+                Color c = cell == null ? null : cell.getColor();
+                out.append(c == null ? '-' : (char) ('0' + ArrayTree.paletteIndex(c)));
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Starts a server and keeps it running
+     * @param args the port, 7070 if not given
+     * @throws IOException if the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        GameServer server = new GameServer(port);
+        System.out.println("Serving games on " + InetAddress.getLoopbackAddress()
+            .getHostAddress() + ":" + server.getPort());
+    }
+}
@@ -0,0 +1,173 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class GameServerTest {
+
+    private GameServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = new GameServer(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.server.close();
+    }
+
+    /*
+     * This checks the replies to every request against the same moves on
+     * a local game
+     */
+    @Test
+    public void requests() throws IOException {
+        try (Client client = new Client(this.server.getPort())) {
+            assertEquals("OK 1", client.call("CREATE 4 9"));
+            Game local = new Game(4, Color.RED, 9L);
+
+            assertEquals("OK", client.call("ROTATE 1 0"));
+            assertEquals("OK", client.call("SWAP 1 1 3"));
+            local.apply(List.of(Move.rotate(0), Move.swap(1, 3)));
+            int leaf = 1;
+            while (!local.getBlock(leaf).isleaf() || local.getBlock(leaf).depth() == 4) {
+                leaf++;
+            }
+            assertEquals("OK 77", client.call("SMASH 1 " + leaf + " 77"));
+            local.apply(List.of(Move.smash(leaf, 77L)));
+
+            assertEquals("OK " + local.perimeter_score(), client.call("SCORE 1"));
+            assertEquals("OK " + local.blob_score(), client.call("score 1 blob"));
+            assertEquals("OK " + GameServer.cells(local.flatten()),
+                client.call("FLATTEN 1"));
+
+            assertTrue(client.call("SWAP 1 0 1").startsWith("ERR"));
+            assertTrue(client.call("ROTATE 2 0").startsWith("ERR"));
+            assertTrue(client.call("CREATE 99").startsWith("ERR"));
+            assertTrue(client.call("JUMP").startsWith("ERR"));
+            assertTrue(client.call("SWAP 1 x 2").startsWith("ERR"));
+            assertEquals("OK", client.call("DROP 1"));
+            assertTrue(client.call("SCORE 1").startsWith("ERR"));
+            assertTrue(client.call("STATS").startsWith("OK sessions=1 requests="));
+            assertEquals("BYE", client.call("QUIT"));
+        }
+        assertTrue(this.server.requests() >= 15);
+        assertTrue(this.server.latency(50) <= this.server.latency(99));
+    }
+
+    /*
+     * This checks that concurrent sessions each see only their own games
+     */
+    @Test
+    public void isolatedSessions() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> scores = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                long seed = i;
+                scores.add(clients.submit(() -> {
+                    try (Client client = new Client(this.server.getPort())) {
+                        assertEquals("OK 1", client.call("CREATE 3 " + seed));
+                        for (int m = 0; m < 20; m++) {
+                            client.call("ROTATE 1 0");
+                        }
+                        return client.call("SCORE 1");
+                    }
+                }));
+            }
+            for (int i = 0; i < 32; i++) {
+                assertEquals("OK " + new Game(3, Color.RED, i).perimeter_score(),
+                    scores.get(i).get());
+            }
+        }
+        finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /*
+     * This holds many sessions open at once, as a busy server would, and
+     * plays requests on all of them in turn: each keeps its own game and
+     * every request is answered
+     */
+    @Test
+    public void manySessions() throws Exception {
+        int count = 256;
+        List<Client> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                clients.add(new Client(this.server.getPort()));
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals("OK 1", clients.get(i).call("CREATE 4 " + i));
+            }
+            assertEquals(count, this.server.sessions());
+            for (int m = 0; m < 8; m++) {
+                for (Client client : clients) {
+                    assertEquals("OK", client.call("ROTATE 1 " + m));
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                Game local = new Game(4, Color.RED, i);
+                for (int m = 0; m < 8; m++) {
+                    local.apply(List.of(Move.rotate(m)));
+                }
+                assertEquals("OK " + local.perimeter_score(),
+                    clients.get(i).call("SCORE 1"));
+            }
+        }
+        finally {
+            for (Client client : clients) {
+                client.close();
+            }
+        }
+        assertEquals(10L * count, this.server.requests());
+    }
+
+    /**
+     * A line client on the loopback interface
+     */
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Client(int port) throws IOException {
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            this.in = new BufferedReader(new InputStreamReader(
+                this.socket.getInputStream(), StandardCharsets.US_ASCII));
+            this.out = new PrintWriter(this.socket.getOutputStream(), true,
+                StandardCharsets.US_ASCII);
+        }
+
+        String call(String request) throws IOException {
+            this.out.println(request);
+            return this.in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.socket.close();
+        }
+    }
+}
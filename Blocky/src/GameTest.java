@@ -1,6 +1,13 @@
 import static org.junit.Assert.*;
 
 import java.awt.Color;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 
 
@@ -116,4 +123,493 @@ public class GameTest {
         //This checks if the perimeter score is calculated as expected
         assertEquals(2, testScore);
     } 
+
+    /*
+     * This checks that the id index behind getBlock() still matches a
+     * fresh BFS of the tree after smashes, rotations and swaps made
+     * through the blocks as well as through the game
+     */
+    @Test
+    public void getBlockFollowsMoves() {
+        Game game = new Game(4, Color.red);
+        assertBfsOrder(game);
+
+        IBlock first = game.getBlock(1);
+        first.smash(game.max_depth());
+        assertBfsOrder(game);
+
+        game.getRoot().rotate();
+        assertBfsOrder(game);
+
+        game.getBlock(2).rotate();
+        assertBfsOrder(game);
+
+        game.swap(1, 3);
+        assertBfsOrder(game);
+
+        game.swap(5, 8);
+        assertBfsOrder(game);
+    }
+
+    /*
+     * This checks the index after many random moves, undone batches
+     * included, with stored and with derived points
+     */
+    @Test
+    public void getBlockFollowsRandomMoves() {
+        getBlockFollowsRandomMoves(false);
+        getBlockFollowsRandomMoves(true);
+    }
+
+    private static void getBlockFollowsRandomMoves(boolean implicit) {
+        Game game = new Game(5, Color.red, 21L);
+        game.setImplicitGeometry(implicit);
+        SplittableRandom rand = new SplittableRandom(21);
+        for (int i = 0; i < 300; i++) {
+            Move move = game.snapshot().randomMove(rand);
+            if (i % 10 == 0) {
+                try {
+                    game.apply(List.of(move, Move.rotate(-1)));
+                    fail();
+                }
+                catch (IllegalArgumentException e) {
+                    //the move is undone
+                }
+            }
+            else {
+                game.apply(List.of(move));
+            }
+            if (i % 7 == 0) {
+                assertBfsOrder(game);
+            }
+        }
+        assertBfsOrder(game);
+    }
+
+    /*
+     * This checks that a batch that fails with something other than an
+     * invalid move is undone as well
+     */
+    @Test
+    public void applyUndoesOnAnyFailure() {
+        Game game = new Game(4, Color.red, 9L);
+        long[] before = Zobrist.hashes(game.getRoot());
+        List<Move> failing = new AbstractList<Move>() {
+            @Override
+            public Move get(int i) {
+                if (i == 2) {
+                    throw new IllegalStateException("no move");
+                }
+                return Move.rotate(i);
+            }
+
+            @Override
+            public int size() {
+                return 3;
+            }
+        };
+        try {
+            game.apply(failing);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            //expected
+        }
+        assertArrayEquals(before, Zobrist.hashes(game.getRoot()));
+        assertBfsOrder(game);
+    }
+
+    /*
+     * This compares getBlock() against the BFS order of the tree
+     */
+    private static void assertBfsOrder(Game game) {
+        List<IBlock> expected = new ArrayList<>();
+        ArrayDeque<IBlock> queue = new ArrayDeque<>();
+        queue.offer(game.getRoot());
+        while (!queue.isEmpty()) {
+            IBlock block = queue.poll();
+            expected.add(block);
+            queue.addAll(block.children());
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), game.getBlock(i));
+        }
+    }
+
+    /*
+     * This checks that flatten() hands back the same grid while the board
+     * is unchanged and that the cells it rewrites after moves match a grid
+     * built from scratch
+     */
+    @Test
+    public void flattenReusesGrid() {
+        Game game = new Game(3, Color.red);
+        IBlock[][] grid = game.flatten();
+        assertSame(grid, game.flatten());
+        assertSame(grid, game.getGrid());
+
+        game.getRoot().rotate();
+        game.getBlock(1).smash(game.max_depth());
+        game.swap(1, 2);
+        game.getBlock(4).setColor(Color.pink);
+        assertSame(grid, game.flatten());
+
+        Game fresh = new Game(3, Color.red);
+        fresh.setRoot(game.getRoot());
+        IBlock[][] expected = fresh.flatten();
+        for (int i = 0; i < grid.length; i++) {
+            for (int j = 0; j < grid.length; j++) {
+                assertSame(expected[i][j], grid[i][j]);
+            }
+        }
+    }
+
+    /*
+     * This checks the running perimeter score against a count over a
+     * freshly flattened grid after each kind of move
+     */
+    @Test
+    public void perimeterFollowsMoves() {
+        Game game = new Game(3, Color.red);
+        assertEquals(countPerimeter(game), game.perimeter_score());
+
+        game.getRoot().rotate();
+        assertEquals(countPerimeter(game), game.perimeter_score());
+
+        game.getBlock(1).smash(game.max_depth());
+        assertEquals(countPerimeter(game), game.perimeter_score());
+
+        game.swap(1, 3);
+        assertEquals(countPerimeter(game), game.perimeter_score());
+
+        game.getBlock(2).setColor(Color.red);
+        game.getBlock(3).setColor(Color.red);
+        assertEquals(countPerimeter(game), game.perimeter_score());
+    }
+
+    /*
+     * This checks that a game whose blocks derive their bounds from the
+     * tree flattens and scores the same as the stored points would give,
+     * and that switching back to stored points keeps every block in place
+     */
+    @Test
+    public void implicitGeometry() {
+        Game game = new Game(3, Color.red, true);
+        game.getRoot().rotate();
+        game.getBlock(2).smash(game.max_depth());
+        game.swap(1, 4);
+        game.getBlock(1).rotate();
+        assertGridMatches(game);
+        assertEquals(countPerimeter(game), game.perimeter_score());
+
+        IBlock first = game.getBlock(1);
+        Point topLeft = first.getTopLeft();
+        game.setImplicitGeometry(false);
+        assertEquals(topLeft.getX(), first.getTopLeft().getX());
+        assertEquals(topLeft.getY(), first.getTopLeft().getY());
+        game.getRoot().rotate();
+        assertGridMatches(game);
+        assertEquals(countPerimeter(game), game.perimeter_score());
+    }
+
+    private static void assertGridMatches(Game game) {
+        int gridSize = 1 << game.max_depth();
+        Color[][] expected = new Color[gridSize][gridSize];
+        paintColors(game.getRoot(), expected, unitSize(game));
+        IBlock[][] grid = game.flatten();
+        for (int i = 0; i < gridSize; i++) {
+            for (int j = 0; j < gridSize; j++) {
+                assertEquals(expected[i][j], grid[i][j].getColor());
+            }
+        }
+    }
+
+    /*
+     * This checks that boards deeper than the original 8x8 root get a root
+     * large enough for their grid, and that they flatten and score the
+     * same way the small boards do
+     */
+    @Test
+    public void largeBoards() {
+        Game game = new Game(6, Color.red);
+        assertEquals(64, game.getRoot().getBotRight().getX());
+        assertEquals(64, game.flatten().length);
+        game.getRoot().rotate();
+        game.swap(1, 2);
+        assertGridMatches(game);
+        assertEquals(countPerimeter(game), game.perimeter_score());
+
+        Game deep = new Game(16, Color.red);
+        assertEquals(1 << 16, deep.getRoot().getBotRight().getX());
+        int score = deep.perimeter_score();
+        assertTrue(score >= 0 && score <= 4 * (1 << 16));
+    }
+
+    /*
+     * This checks that the parallel flatten builds exactly the grid of the
+     * sequential one, on a board large enough to be split into tasks, and
+     * after moves and with implicit geometry
+     */
+    @Test
+    public void parallelFlatten() {
+        Game sequential = new Game(9, Color.red, 3L);
+        Game parallel = new Game(9, Color.red, 3L);
+        parallel.setParallelFlatten(true);
+        assertTrue(parallel.isParallelFlatten());
+        assertSameColors(sequential.flatten(), parallel.flatten());
+        assertGridMatches(parallel);
+
+        parallel.getRoot().rotate();
+        parallel.swap(1, 3);
+        parallel.setGrid(null);
+        assertGridMatches(parallel);
+
+        parallel.setImplicitGeometry(true);
+        parallel.getBlock(2).rotate();
+        parallel.setGrid(null);
+        assertGridMatches(parallel);
+    }
+
+    /*
+     * This checks that the parallel generation reaches max_depth, repeats
+     * for a seed, and that the blocks it builds follow the game: ids,
+     * flatten and score stay current after moves
+     */
+    @Test
+    public void parallelInit() {
+        Game first = new Game(10, Color.red, 11L, true);
+        Game second = new Game(10, Color.red, 11L, true);
+        assertSameColors(first.flatten(), second.flatten());
+        assertBfsOrder(first);
+
+        int deepest = 0;
+        for (IBlock[] row : first.flatten()) {
+            for (IBlock leaf : row) {
+                deepest = Math.max(deepest, leaf.depth());
+            }
+        }
+        assertEquals(10, deepest);
+
+        first.getBlock(3).smash(first.max_depth());
+        first.getRoot().rotate();
+        first.swap(1, 2);
+        assertBfsOrder(first);
+        assertGridMatches(first);
+        assertEquals(countPerimeter(first), first.perimeter_score());
+    }
+
+    /*
+     * This checks that a batch makes the same moves as one by one calls,
+     * and that a batch with an invalid move leaves the board untouched
+     */
+    @Test
+    public void applyBatch() {
+        Game batch = new Game(4, Color.red, 5L);
+        Game single = new Game(4, Color.red, 5L);
+        int leaf = firstSmashable(batch);
+        batch.apply(List.of(Move.rotate(0), Move.swap(1, 2), Move.smash(leaf, 9L),
+            Move.rotate(leaf)));
+
+        single.getRoot().rotate();
+        single.swap(1, 2);
+        single.getBlock(leaf).smash(4, new SplittableRandom(9L));
+        single.getBlock(leaf).rotate();
+        assertSameColors(single.flatten(), batch.flatten());
+        assertEquals(single.perimeter_score(), batch.perimeter_score());
+        assertBfsOrder(batch);
+
+        Color[][] before = colors(batch.flatten());
+        int score = batch.perimeter_score();
+        int leafAfter = firstSmashable(batch);
+        try {
+            batch.apply(List.of(Move.rotate(1), Move.swap(2, 3),
+                Move.smash(leafAfter, 1L), Move.swap(0, 1)));
+            fail("swapping the root is not a valid move");
+        }
+        catch (IllegalArgumentException e) {
+            //expected
+        }
+        assertArrayEquals(before, colors(batch.flatten()));
+        assertEquals(score, batch.perimeter_score());
+        assertBfsOrder(batch);
+        assertGridMatches(batch);
+    }
+
+    /*
+     * This returns the id of the first leaf above max depth
+     */
+    private static int firstSmashable(Game game) {
+        for (int id = 1; ; id++) {
+            IBlock block = game.getBlock(id);
+            if (block.isleaf() && block.depth() < game.max_depth()) {
+                return id;
+            }
+        }
+    }
+
+    private static Color[][] colors(IBlock[][] grid) {
+        Color[][] colors = new Color[grid.length][grid.length];
+        for (int i = 0; i < grid.length; i++) {
+            for (int j = 0; j < grid.length; j++) {
+                colors[i][j] = grid[i][j].getColor();
+            }
+        }
+        return colors;
+    }
+
+    /*
+     * This checks that with publishing on the snapshot follows every kind
+     * of change: moves of the game, batches that are rolled back, and
+     * smash/rotate/setColor made directly on blocks
+     */
+    @Test
+    public void publishedSnapshots() {
+        Game game = new Game(4, Color.red, 13L);
+        game.setPublishing(true);
+        assertSnapshotMatches(game);
+
+        game.swap(1, 2);
+        game.getRoot().rotate();
+        assertSnapshotMatches(game);
+        int leaf = firstSmashable(game);
+        game.getBlock(leaf).smash(game.max_depth());
+        assertSnapshotMatches(game);
+        game.getBlock(leaf).setColor(null);
+        game.flatten()[0][0].setColor(Color.RED);
+        assertSnapshotMatches(game);
+        try {
+            game.apply(List.of(Move.smash(firstSmashable(game), 3L), Move.rotate(1),
+                Move.swap(0, 2)));
+        }
+        catch (IllegalArgumentException e) {
+            //rolled back
+        }
+        assertSnapshotMatches(game);
+
+        PersistentBoard before = game.snapshot();
+        game.setImplicitGeometry(true);
+        game.swap(3, 4);
+        assertSnapshotMatches(game);
+        assertNotSame(before, game.snapshot());
+    }
+
+    /*
+     * This checks that a reader thread only ever sees whole versions: the
+     * score of every snapshot it takes matches its grid, while the game
+     * makes moves
+     */
+    @Test
+    public void snapshotsWhileMoving() throws InterruptedException {
+        Game game = new Game(5, Color.red, 17L);
+        game.setPublishing(true);
+        AtomicReference<String> error =
+            new AtomicReference<>();
+        AtomicBoolean done =
+            new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                PersistentBoard board = game.snapshot();
+                IBlock[][] grid = board.flatten();
+                int last = grid.length - 1;
+                int count = 0;
+                for (int i = 0; i <= last; i++) {
+                    count += grid[0][i].getColor() == Color.red ? 1 : 0;
+                    count += grid[last][i].getColor() == Color.red ? 1 : 0;
+                    count += grid[i][0].getColor() == Color.red ? 1 : 0;
+                    count += grid[i][last].getColor() == Color.red ? 1 : 0;
+                }
+                if (count != board.perimeterScore()) {
+                    error.set("score " + board.perimeterScore() + ", grid " + count);
+                }
+            }
+        });
+        reader.start();
+        SplittableRandom rand = new SplittableRandom(1);
+        for (int i = 0; i < 2000; i++) {
+            game.getRoot().rotate();
+            game.swap(1 + rand.nextInt(4), 1 + rand.nextInt(4));
+        }
+        done.set(true);
+        reader.join();
+        assertNull(error.get());
+        assertSnapshotMatches(game);
+    }
+
+    private static void assertSnapshotMatches(Game game) {
+        PersistentBoard snapshot = game.snapshot();
+        assertSameColors(game.flatten(), snapshot.flatten());
+        assertEquals(game.perimeter_score(), snapshot.perimeterScore());
+        for (int id = 0; id < snapshot.size(); id++) {
+            assertEquals(game.getBlock(id).depth(), snapshot.getBlock(id).depth());
+        }
+    }
+
+    /*
+     * This checks that the same seed always builds the same board, also
+     * for the array backed game, and that smashes made afterwards through
+     * the game's generator repeat too
+     */
+    @Test
+    public void seededBoards() {
+        Game first = new Game(4, Color.red, 7L);
+        Game second = new Game(4, Color.red, 7L);
+        assertSameColors(first.flatten(), second.flatten());
+        assertEquals(first.perimeter_score(), second.perimeter_score());
+
+        IBlock leafOne = first.flatten()[0][0];
+        IBlock leafTwo = second.flatten()[0][0];
+        leafOne.smash(first.max_depth(), first.getRandom());
+        leafTwo.smash(second.max_depth(), second.getRandom());
+        assertSameColors(first.flatten(), second.flatten());
+
+        ArrayGame arrayOne = new ArrayGame(4, Color.red, 7L);
+        ArrayGame arrayTwo = new ArrayGame(4, Color.red, 7L);
+        assertSameColors(arrayOne.flatten(), arrayTwo.flatten());
+    }
+
+    private static void assertSameColors(IBlock[][] expected, IBlock[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[i][j].getColor(), actual[i][j].getColor());
+                assertEquals(expected[i][j].depth(), actual[i][j].depth());
+            }
+        }
+    }
+
+    /*
+     * This counts the border cells of the target color the way
+     * perimeter_score() used to, on a grid built from scratch
+     */
+    private static int countPerimeter(Game game) {
+        int gridSize = 1 << game.max_depth();
+        Color[][] grid = new Color[gridSize][gridSize];
+        paintColors(game.getRoot(), grid, unitSize(game));
+        int points = 0;
+        for (int i = 0; i < grid.length; i++) {
+            points += grid[0][i] == Color.red ? 1 : 0;
+            points += grid[grid.length - 1][i] == Color.red ? 1 : 0;
+            points += grid[i][0] == Color.red ? 1 : 0;
+            points += grid[i][grid.length - 1] == Color.red ? 1 : 0;
+        }
+        return points;
+    }
+
+    private static int unitSize(Game game) {
+        return game.getRoot().getBotRight().getX() >> game.max_depth();
+    }
+
+    private static void paintColors(IBlock block, Color[][] grid, int unitS) {
+        if (block.isleaf()) {
+            for (int i = block.getTopLeft().getY(); i < block.getBotRight().getY(); i++) {
+                for (int j = block.getTopLeft().getX(); j < block.getBotRight().getX(); j++) {
+                    grid[i / unitS][j / unitS] = block.getColor();
+                }
+            }
+            return;
+        }
+        for (IBlock child : block.children()) {
+            paintColors(child, grid, unitS);
+        }
+    }
 }
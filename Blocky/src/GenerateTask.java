@@ -0,0 +1,75 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One step of the parallel board generation (see
+ * {@link Game#random_init_parallel(long)}). A task decides if its block is
+ * smashed and hands every new quadrant to a task of its own, each with its
+ * own {@link SplittableRandom#split()} of the parent's generator. The splits
+ * are made in a fixed order, so a seed gives the same board however the
+ * pool schedules the tasks.
+ *
+ * One quadrant per level is on the spine: it is always smashed, so the board
+ * reaches max_depth at least once like the board of random_init(). Every other
+ * block is smashed with probability SPLIT_CHANCE.
+ *
+ * @author Daniel Xu
+ */
+class GenerateTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    static final double SPLIT_CHANCE = 0.5;
+
+    //Subtrees with fewer levels than this left are built by a single task
+    static final int SEQUENTIAL_LEVELS = 4;
+
+    private final Block block;
+    private final int maxDepth;
+    private final boolean spine;
+    private final SplittableRandom rand;
+    private final BlockListener listener;
+
+    /*
+     * This constructs the task that grows the tree under block
+     *
+     * @param block a leaf
+     * @param maxDepth
+     * @param spine true if block must be smashed
+     * @param rand
+     * @param listener set on every block once it is grown, may be null
+     */
+    GenerateTask(Block block, int maxDepth, boolean spine,
+        SplittableRandom rand, BlockListener listener) {
+        this.block = block;
+        this.maxDepth = maxDepth;
+        this.spine = spine;
+        this.rand = rand;
+        this.listener = listener;
+    }
+
+    @Override
+    protected void compute() {
+        if (this.block.depth() < this.maxDepth
+            && (this.spine || this.rand.nextDouble() < SPLIT_CHANCE)) {
+            //Smash before the listener is set, nobody watches the tree yet
+            this.block.smash(this.maxDepth, this.rand);
+            int spineChild = this.spine ? this.rand.nextInt(4) : -1;
+            GenerateTask[] subTasks = new GenerateTask[4];
+            for (int i = 0; i < 4; i++) {
+                subTasks[i] = new GenerateTask((Block) this.block.getChild(i),
+                    this.maxDepth, i == spineChild, this.rand.split(),
+                    this.listener);
+            }
+            if (this.maxDepth - this.block.depth() > SEQUENTIAL_LEVELS) {
+                invokeAll(subTasks);
+            }
+            else {
+                for (GenerateTask subTask : subTasks) {
+                    subTask.compute();
+                }
+            }
+        }
+        this.block.setListener(this.listener);
+    }
+}
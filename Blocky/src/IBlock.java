@@ -1,5 +1,6 @@
 import java.awt.Color;
 import java.util.List;
+import java.util.SplittableRandom;
 
 /**
  * === Class Attributes === 
@@ -89,6 +90,18 @@ public interface IBlock {
     public void smash(int maxDepth);
 
 
+    /**
+     * smash this block into 4 sub blocks whose colors are drawn from random,
+     * so a seeded generator always gives the same sub blocks. Callers that
+     * generate several quadrants independently can hand each one its own
+     * {@link SplittableRandom#split()}.
+     * 
+     * @param maxDepth the max depth of this board/quadtree
+     * @param random the source of the colors of the new blocks
+     */
+    public void smash(int maxDepth, SplittableRandom random);
+
+
     /**
      * used by {@link IGame#random_init()} random_init 
      * to keep track of sub blocks.
@@ -105,6 +118,19 @@ public interface IBlock {
     public List<IBlock> children();
 
 
+    /**
+     * Allocation free access to the sub blocks, meant for traversals that
+     * visit every block (flatten, the id index, the GUI).
+     * 
+     * The children are indexed in the same order as {@link #children()}:
+     * 0 upper-left, 1 upper-right, 2 lower-right, 3 lower-left.
+     * 
+     * @param i the index of the sub block, 0 to 3
+     * @return the sub block at index i or null if there is none
+     */
+    public IBlock getChild(int i);
+
+
     /**
      * rotate this block clockwise.
      * 
@@ -142,6 +168,8 @@ public interface IBlock {
 
 
     /**
+     * Runs in constant time and does not allocate.
+     * 
      * @return true if this block has no children/sub blocks
      */
     public boolean isleaf();
@@ -1,3 +1,4 @@
+import java.util.List;
 
 
 /**
@@ -61,6 +62,21 @@ public interface IGame {
      * @param y the other block to swap
      */
     public void swap(int x, int y);
+
+
+    /**
+     * Applies a batch of moves in order, as one step: either every move is
+     * applied or, if one of them is invalid (an id that is not on the board,
+     * a swap of blocks of different depths or of the root, a smash of a
+     * block that is not a leaf above max_depth), the moves already made are
+     * undone and the board is left as it was. The same holds if the batch
+     * fails in any other way, the exception is then passed on.
+     * 
+     * @param moves the moves, ids refer to the board left by the moves
+     *        before them
+     * @throws IllegalArgumentException if a move is invalid
+     */
+    public void apply(List<Move> moves);
     
     
     
@@ -83,6 +99,16 @@ public interface IGame {
      * @return the score of the user (corner blocs count twice)
      */
     public int perimeter_score();
+
+    
+    /**
+     * computes the size of the largest blob: the number of unit cells
+     * in the largest connected region (cells sharing a side) of the
+     * target color.
+     * 
+     * @return the score of the user in blob mode
+     */
+    public int blob_score();
     
     
     /**
@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, for percentiles under
+ * load. Buckets are log-linear: every power of two is cut into 8 buckets,
+ * so a percentile is off by at most 1/8 of its value, and the whole range
+ * of a long fits in 496 counters that any number of threads can add to.
+ *
+ * @author Daniel Xu
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB + (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /*
+     * This adds one latency
+     *
+     * @param nanos
+     */
+    void record(long nanos) {
+        this.counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    /*
+     * This returns the number of latencies recorded
+     *
+     * @return count
+     */
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += this.counts.get(i);
+        }
+        return total;
+    }
+
+    /*
+     * This returns the latency p percent of the recorded ones do not
+     * exceed, as the middle of its bucket, 0 if nothing was recorded
+     *
+     * @param p
+     * @return nanos
+     */
+    long percentile(double p) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return middle(i);
+            }
+        }
+        return 0;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        return SUB + shift * SUB + (int) ((value >>> shift) & (SUB - 1));
+    }
+
+    private static long middle(int bucket) {
+        if (bucket < SUB) {
+            return bucket;
+        }
+        int shift = (bucket - SUB) / SUB;
+        long low = (long) (SUB + (bucket - SUB) % SUB) << shift;
+        return low + ((1L << shift) >> 1);
+    }
+}
@@ -0,0 +1,367 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Monte Carlo tree search player for any {@link IGame}. For every move
+ * it searches from a {@link PersistentBoard} copy of the game: select with
+ * UCT, expand one move, play random moves out, back the result up. A
+ * playout is worth the best perimeter_score() it reaches (the player can
+ * stop at any point), as a fraction of the largest possible score.
+ *
+ * The search is root parallel: each worker thread grows its own tree from
+ * the same root moves until the time budget is spent, then the visit counts
+ * of the root moves are added up and the most visited move is played.
+ * Workers share nothing while they search, so the playout rate grows with
+ * the number of cores.
+ *
+ * The root expands every legal move; deeper nodes expand SAMPLED_MOVES
+ * random moves, which keeps a node cheap to create on large boards.
+ *
+ * choose() and play() may be called from several threads at once. The
+ * seeds of a search are drawn from the player's random source under a
+ * lock, in the order the calls get to it, so the seeds of a sequence of
+ * searches only repeat from run to run when one thread makes the calls.
+ *
+ * @author Daniel Xu
+ */
+public class MctsPlayer implements AutoCloseable {
+
+    static final int SAMPLED_MOVES = 16;
+    static final int PLAYOUT_MOVES = 8;
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    private final Color target;
+    private final int threads;
+    private final long budgetNanos;
+    private final SplittableRandom rand;
+    private final ExecutorService workers;
+
+    private long playouts;
+    private long searchNanos;
+
+    /*
+     * This constructs a player that thinks budgetMillis per move on
+     * threads worker threads. target is the scoring color for games other
+     * than Game and PersistentGame, which know their own.
+     *
+     * @param target
+     * @param threads
+     * @param budgetMillis
+     * @param seed
+     */
+    public MctsPlayer(Color target, int threads, long budgetMillis, long seed) {
+        if (threads < 1 || budgetMillis < 1) {
+            throw new IllegalArgumentException("threads and budget must be positive");
+        }
+        this.target = target;
+        this.threads = threads;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.rand = new SplittableRandom(seed);
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    /*
+     * Same as MctsPlayer(target, threads, budgetMillis, seed) with one
+     * worker per core
+     */
+    public MctsPlayer(Color target, long budgetMillis, long seed) {
+        this(target, Runtime.getRuntime().availableProcessors(), budgetMillis,
+            seed);
+    }
+
+    /*
+     * This searches for the best next move of game and makes it
+     *
+     * @param game
+     * @return decision
+     */
+    public Decision play(IGame game) {
+        Decision decision = this.choose(game);
+        if (decision.getMove() != null) {
+            game.apply(List.of(decision.getMove()));
+        }
+        return decision;
+    }
+
+    /*
+     * This searches for the best next move of game without making it
+     *
+     * @param game
+     * @return decision
+     */
+    public Decision choose(IGame game) {
+        return this.choose(this.boardOf(game));
+    }
+
+    /*
+     * This searches for the best next move from board
+     *
+     * @param board
+     * @return decision
+     */
+    public Decision choose(PersistentBoard board) {
+        long begin = System.nanoTime();
+        long deadline = begin + this.budgetNanos;
+        List<Move> rootMoves;
+        SplittableRandom[] rands = new SplittableRandom[this.threads];
+        //SplittableRandom is not thread safe, callers take turns on it
+        synchronized (this.rand) {
+            rootMoves = board.moves(this.rand);
+            if (rootMoves.isEmpty()) {
+                return new Decision(null, 0, 0, 0);
+            }
+            for (int t = 0; t < this.threads; t++) {
+                rands[t] = this.rand.split();
+            }
+        }
+
+        List<Future<Tree>> trees = new ArrayList<>(this.threads);
+        for (int t = 0; t < this.threads; t++) {
+            Tree tree = new Tree(board, rootMoves, rands[t]);
+            trees.add(this.workers.submit(() -> tree.search(deadline)));
+        }
+
+        //Add up the visits of each root move over all trees
+        Map<Move, long[]> totals = new HashMap<>();
+        long count = 0;
+        try {
+            for (Future<Tree> future : trees) {
+                Tree tree = future.get();
+                count += tree.playouts;
+                for (Node child : tree.root.children) {
+                    long[] total = totals.computeIfAbsent(child.move,
+                        m -> new long[1]);
+                    total[0] += child.visits;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+
+        Move best = rootMoves.get(0);
+        long bestVisits = -1;
+        for (Move move : rootMoves) {
+            long[] total = totals.get(move);
+            if (total != null && total[0] > bestVisits) {
+                best = move;
+                bestVisits = total[0];
+            }
+        }
+        long nanos = System.nanoTime() - begin;
+        synchronized (this) {
+            this.playouts += count;
+            this.searchNanos += nanos;
+        }
+        return new Decision(best, Math.max(bestVisits, 0), count, nanos);
+    }
+
+    /*
+     * This returns the playouts per second over all searches so far
+     *
+     * @return playoutsPerSecond
+     */
+    public synchronized double playoutsPerSecond() {
+        return this.searchNanos == 0 ? 0 : this.playouts * 1e9 / this.searchNanos;
+    }
+
+    /*
+     * This stops the worker threads
+     */
+    @Override
+    public void close() {
+        this.workers.shutdownNow();
+    }
+
+    /*
+     * This returns an immutable copy of the board of game
+     */
+    private PersistentBoard boardOf(IGame game) {
+        if (game instanceof PersistentGame) {
+            return ((PersistentGame) game).getBoard();
+        }
+        if (game instanceof Game) {
+            return ((Game) game).snapshot();
+        }
+        return PersistentBoard.of(game.getRoot(), game.max_depth(), this.target);
+    }
+
+    /**
+     * The search tree of one worker
+     */
+    private static final class Tree {
+        final Node root;
+        final SplittableRandom rand;
+        final double maxScore;
+        long playouts;
+
+        Tree(PersistentBoard board, List<Move> rootMoves, SplittableRandom rand) {
+            this.root = new Node(board, null, null, rootMoves);
+            this.rand = rand;
+            this.maxScore = 4.0 * (1 << board.maxDepth());
+        }
+
+        Tree search(long deadline) {
+            do {
+                //Selection
+                Node node = this.root;
+                while (node.untried.isEmpty() && !node.children.isEmpty()) {
+                    node = node.select();
+                }
+                //Expansion
+                if (!node.untried.isEmpty()) {
+                    Move move = node.untried.remove(node.untried.size() - 1);
+                    PersistentBoard next = node.board.apply(move);
+                    Node child = new Node(next, node, move, this.sample(next));
+                    node.children.add(child);
+                    node = child;
+                }
+                //Playout and backup
+                double value = this.playout(node.board) / this.maxScore;
+                for (Node n = node; n != null; n = n.parent) {
+                    n.visits++;
+                    n.value += value;
+                }
+                this.playouts++;
+            } while (System.nanoTime() < deadline);
+            return this;
+        }
+
+        /*
+         * This returns up to SAMPLED_MOVES random moves of board
+         */
+        List<Move> sample(PersistentBoard board) {
+            List<Move> moves = new ArrayList<>(SAMPLED_MOVES);
+            for (int i = 0; i < SAMPLED_MOVES; i++) {
+                Move move = board.randomMove(this.rand);
+                if (move == null) {
+                    break;
+                }
+                moves.add(move);
+            }
+            return moves;
+        }
+
+        /*
+         * This plays PLAYOUT_MOVES random moves and returns the best score
+         * seen on the way
+         */
+        int playout(PersistentBoard board) {
+            int best = board.perimeterScore();
+            PersistentBoard cur = board;
+            for (int i = 0; i < PLAYOUT_MOVES; i++) {
+                Move move = cur.randomMove(this.rand);
+                if (move == null) {
+                    break;
+                }
+                cur = cur.apply(move);
+                best = Math.max(best, cur.perimeterScore());
+            }
+            return best;
+        }
+    }
+
+    /**
+     * One node of a search tree
+     */
+    private static final class Node {
+        final PersistentBoard board;
+        final Node parent;
+        final Move move;
+        final List<Move> untried;
+        final List<Node> children = new ArrayList<>();
+        long visits;
+        double value;
+
+        Node(PersistentBoard board, Node parent, Move move, List<Move> moves) {
+            this.board = board;
+            this.parent = parent;
+            this.move = move;
+            this.untried = new ArrayList<>(moves);
+        }
+
+        /*
+         * This returns the child with the best UCT value
+         */
+        Node select() {
+            double logVisits = Math.log(this.visits);
+            Node best = null;
+            double bestUct = Double.NEGATIVE_INFINITY;
+            for (Node child : this.children) {
+                double uct = child.value / child.visits
+                    + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (uct > bestUct) {
+                    best = child;
+                    bestUct = uct;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * The move a search chose and what the search cost
+     */
+    public static final class Decision {
+        private final Move move;
+        private final long visits;
+        private final long playouts;
+        private final long nanos;
+
+        Decision(Move move, long visits, long playouts, long nanos) {
+            this.move = move;
+            this.visits = visits;
+            this.playouts = playouts;
+            this.nanos = nanos;
+        }
+
+        /*
+         * This returns the chosen move, null if the board has none
+         *
+         * @return move
+         */
+        public Move getMove() {
+            return this.move;
+        }
+
+        /*
+         * This returns how often the chosen move was visited over all trees
+         *
+         * @return visits
+         */
+        public long getVisits() {
+            return this.visits;
+        }
+
+        public long getPlayouts() {
+            return this.playouts;
+        }
+
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        public double playoutsPerSecond() {
+            return this.nanos == 0 ? 0 : this.playouts * 1e9 / this.nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s after %d playouts in %.1f ms (%.0f playouts/s)",
+                this.move, this.playouts, this.nanos / 1e6,
+                this.playoutsPerSecond());
+        }
+    }
+}
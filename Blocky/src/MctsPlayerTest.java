@@ -0,0 +1,49 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class MctsPlayerTest {
+
+    /*
+     * This checks that the player makes legal moves on a Game and on a
+     * PersistentGame, and reports its playouts
+     */
+    @Test
+    public void play() {
+        try (MctsPlayer player = new MctsPlayer(Color.red, 2, 30, 4L)) {
+            Game game = new Game(3, Color.red, 8L);
+            for (int i = 0; i < 3; i++) {
+                PersistentBoard before = game.snapshot();
+                MctsPlayer.Decision decision = player.play(game);
+                assertNotNull(decision.getMove());
+                assertTrue(decision.getPlayouts() > 0);
+                assertTrue(decision.getVisits() > 0);
+                //The move was legal on the board before it
+                assertEquals(before.apply(decision.getMove()).perimeterScore(),
+                    game.perimeter_score());
+            }
+
+            PersistentGame persistent = new PersistentGame(3, Color.red, 8L);
+            assertNotNull(player.play(persistent).getMove());
+            assertTrue(persistent.canUndo());
+            assertTrue(player.playoutsPerSecond() > 0);
+        }
+    }
+
+    /*
+     * This checks that a board without moves gives no move
+     */
+    @Test
+    public void noMoves() {
+        try (MctsPlayer player = new MctsPlayer(Color.red, 1, 5, 1L)) {
+            PersistentGame game = new PersistentGame(0, Color.red, 1L);
+            assertNull(player.play(game).getMove());
+        }
+    }
+}
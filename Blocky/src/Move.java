@@ -0,0 +1,134 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One move of a batch given to {@link IGame#apply(java.util.List)}: a swap of
+ * two blocks, a rotation of one block, or a smash of one leaf. Ids are BFS
+ * ids on the board as it stands when the move is reached, so earlier moves
+ * of the batch count. A smash carries the seed of its colors, which makes
+ * every move replayable.
+ *
+ * @author Daniel Xu
+ */
+public final class Move {
+
+    /**
+     * The kinds of moves
+     */
+    public enum Kind {
+        SWAP, ROTATE, SMASH
+    }
+
+    private final Kind kind;
+    private final int x;
+    private final int y;
+    private final long seed;
+
+    /*
+     * This constructs a move, use the factories below
+     */
+    private Move(Kind kind, int x, int y, long seed) {
+        this.kind = kind;
+        this.x = x;
+        this.y = y;
+        this.seed = seed;
+    }
+
+    /*
+     * This returns the move that swaps the blocks with ids x and y, which
+     * must be at the same depth
+     *
+     * @param x
+     * @param y
+     * @return move
+     */
+    public static Move swap(int x, int y) {
+        return new Move(Kind.SWAP, x, y, 0);
+    }
+
+    /*
+     * This returns the move that rotates the block with id clockwise
+     *
+     * @param id
+     * @return move
+     */
+    public static Move rotate(int id) {
+        return new Move(Kind.ROTATE, id, -1, 0);
+    }
+
+    /*
+     * This returns the move that smashes the leaf with id, with the colors
+     * of the new blocks drawn from a SplittableRandom seeded with seed
+     *
+     * @param id
+     * @param seed
+     * @return move
+     */
+    public static Move smash(int id, long seed) {
+        return new Move(Kind.SMASH, id, -1, seed);
+    }
+
+    /*
+     * Same as smash(id, seed) with a random seed
+     *
+     * @param id
+     * @return move
+     */
+    public static Move smash(int id) {
+        return smash(id, ThreadLocalRandom.current().nextLong());
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /*
+     * This returns the id of the block the move acts on, the first block
+     * of a swap
+     *
+     * @return x
+     */
+    public int getX() {
+        return this.x;
+    }
+
+    /*
+     * This returns the id of the second block of a swap, -1 otherwise
+     *
+     * @return y
+     */
+    public int getY() {
+        return this.y;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Move)) {
+            return false;
+        }
+        Move other = (Move) o;
+        return this.kind == other.kind && this.x == other.x
+            && this.y == other.y && this.seed == other.seed;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((this.kind.hashCode() * 31 + this.x) * 31 + this.y) * 31
+            + Long.hashCode(this.seed);
+    }
+
+    @Override
+    public String toString() {
+        switch (this.kind) {
+            case SWAP:
+                return "SWAP " + this.x + " " + this.y;
+            case ROTATE:
+                return "ROTATE " + this.x;
+            default:
+                return "SMASH " + this.x + " " + this.seed;
+        }
+    }
+}
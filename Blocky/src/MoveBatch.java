@@ -0,0 +1,131 @@
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The IGame.apply() of the games over {@link Block} trees, {@link Game} and
+ * {@link StripedGame}. Each move that was made leaves its inverse on a
+ * stack: a swap is its own inverse, a rotate is undone by three more, a
+ * smash by dropping the new blocks again (see Block.unsmash()). When a move
+ * is invalid, or the batch fails in any other way, the stack is run back
+ * and the exception passed on, so the board is left as it was.
+ *
+ * The moves reach the game through the blocks and {@link Board#swap}, so
+ * the game hears of them the way it hears of any other move.
+ *
+ * @author Daniel Xu
+ */
+final class MoveBatch {
+
+    /**
+     * What a batch needs of a game
+     */
+    interface Board {
+
+        /**
+         * @param id a BFS id
+         * @return the block with that id, null if there is none
+         */
+        Block block(int id);
+
+        /**
+         * @return the root block
+         */
+        IBlock root();
+
+        /**
+         * @return the max depth of the game
+         */
+        int maxDepth();
+
+        /**
+         * Swaps the blocks with ids x and y, two blocks of one depth below
+         * the root
+         *
+         * @param x an id
+         * @param y an id
+         */
+        void swap(int x, int y);
+    }
+
+    private MoveBatch() {
+    }
+
+    /*
+     * This applies moves to board as one step
+     *
+     * @param board
+     * @param moves
+     * @throws IllegalArgumentException if a move is invalid
+     */
+    static void apply(Board board, List<Move> moves) {
+        Deque<Runnable> undo = new ArrayDeque<>();
+        try {
+            for (Move move : moves) {
+                undo.push(applyMove(board, move));
+            }
+        }
+        catch (RuntimeException e) {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * This makes one move of a batch and returns what undoes it
+     */
+    private static Runnable applyMove(Board board, Move move) {
+        int x = move.getX();
+        Block block = target(board, x, move);
+        switch (move.getKind()) {
+            case SWAP:
+                int y = move.getY();
+                Block other = target(board, y, move);
+                IBlock root = board.root();
+                if (block == root || other == root
+                    || block.depth() != other.depth()) {
+                    throw new IllegalArgumentException("Invalid move: " + move);
+                }
+                if (block == other) {
+                    return () -> { };
+                }
+                board.swap(x, y);
+                return () -> board.swap(x, y);
+            case ROTATE:
+                block.rotate();
+                return () -> {
+                    block.rotate();
+                    block.rotate();
+                    block.rotate();
+                };
+            default:
+                if (!block.isleaf() || block.depth() >= board.maxDepth()) {
+                    throw new IllegalArgumentException("Invalid move: " + move);
+                }
+                Color before = block.getColor();
+                block.smash(board.maxDepth(), new SplittableRandom(move.getSeed()));
+                return () -> block.unsmash(before);
+        }
+    }
+
+    /*
+     * This returns the block with id pos for move
+     */
+    private static Block target(Board board, int pos, Move move) {
+        try {
+            Block block = board.block(pos);
+            if (block != null) {
+                return block;
+            }
+        }
+        catch (IndexOutOfBoundsException e) {
+            //reported below
+        }
+        throw new IllegalArgumentException("Invalid move: " + move
+            + ", no block with id " + pos);
+    }
+}
@@ -0,0 +1,336 @@
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A journal of the moves of one game, to audit and replay a session.
+ *
+ * The journal file starts with a 16 byte header (magic, max depth, target
+ * color, checkpoint interval) followed by one fixed size record per move:
+ * the kind, the two ids and the seed of the smash colors. Records have a
+ * fixed size, so move n is found by its offset alone. Every interval moves
+ * (and at move 0) the board is saved to a {@link BoardStore} next to the
+ * journal (the journal file name plus ".checkpoints"), so the board at move
+ * n is rebuilt from the last checkpoint at or before n plus at most
+ * interval - 1 moves.
+ *
+ * Moves are written through a direct buffer that reaches the file on
+ * flush(), close() or when it is full, so recording a move is a few puts.
+ * flush() and close() also force the moves to the device, and only then the
+ * checkpoints. A journal cut short by a crash of the process ends at its
+ * last whole record; a crash of the machine keeps at least the moves of the
+ * last flush(). Replay falls back to the last checkpoint that made it to
+ * disk.
+ *
+ * @author Daniel Xu
+ */
+public final class MoveJournal implements Closeable {
+
+    static final String CHECKPOINT_SUFFIX = ".checkpoints";
+    static final int HEADER = 16;
+    static final int RECORD = 1 + 4 + 4 + 8;
+    private static final int MAGIC = 0x424C4A31;
+    private static final Move.Kind[] KINDS = Move.Kind.values();
+
+    private final MappedByteBuffer moves;
+    private final long size;
+    private final int maxDepth;
+    private final Color target;
+    private final int interval;
+    private final BoardStore checkpoints;
+
+    private MoveJournal(MappedByteBuffer moves, BoardStore checkpoints) {
+        this.moves = moves;
+        this.checkpoints = checkpoints;
+        this.maxDepth = moves.getInt(4);
+        this.target = new Color(moves.getInt(8), true);
+        this.interval = moves.getInt(12);
+        this.size = (moves.limit() - HEADER) / RECORD;
+    }
+
+    /*
+     * This maps the journal in file for replay
+     *
+     * @param file
+     * @return journal
+     * @throws IOException
+     */
+    public static MoveJournal open(Path file) throws IOException {
+        MappedByteBuffer moves;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() < HEADER) {
+                throw new StreamCorruptedException(file + " is not a journal");
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to map");
+            }
+            moves = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (moves.getInt(0) != MAGIC) {
+            throw new StreamCorruptedException(file + " is not a journal");
+        }
+        return new MoveJournal(moves, BoardStore.open(checkpointsOf(file)));
+    }
+
+    /*
+     * This starts a new journal in file for game, from the board it has
+     * now, with a checkpoint every interval moves. An older journal in file
+     * is replaced.
+     *
+     * @param file
+     * @param game
+     * @param interval
+     * @return writer
+     * @throws IllegalArgumentException if the game does not tell its
+     *         target color, see create(file, game, target, interval)
+     * @throws IOException
+     */
+    public static Writer create(Path file, IGame game, int interval)
+        throws IOException {
+        return new Writer(file, game, targetOf(game), interval);
+    }
+
+    /*
+     * Same as create(file, game, interval) for a game that scores target
+     */
+    public static Writer create(Path file, IGame game, Color target,
+        int interval) throws IOException {
+        return new Writer(file, game, target, interval);
+    }
+
+    /*
+     * This returns the number of moves in the journal
+     *
+     * @return size
+     */
+    public long size() {
+        return this.size;
+    }
+
+    public int maxDepth() {
+        return this.maxDepth;
+    }
+
+    public Color target() {
+        return this.target;
+    }
+
+    /*
+     * This returns move i, counting from 0
+     *
+     * @param i
+     * @return move
+     * @throws IndexOutOfBoundsException if there is no move i
+     */
+    public Move move(long i) {
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException("No move " + i + " in a journal of "
+                + this.size);
+        }
+        int at = (int) (HEADER + i * RECORD);
+        int x = this.moves.getInt(at + 1);
+        int y = this.moves.getInt(at + 5);
+        switch (KINDS[this.moves.get(at)]) {
+            case SWAP:
+                return Move.swap(x, y);
+            case ROTATE:
+                return Move.rotate(x);
+            default:
+                return Move.smash(x, this.moves.getLong(at + 9));
+        }
+    }
+
+    /*
+     * This returns a new game with the board after the first n moves
+     *
+     * @param n
+     * @return game
+     */
+    public Game replay(long n) {
+        Game game = new Game(this.maxDepth, this.target);
+        this.replay(n, game);
+        return game;
+    }
+
+    /*
+     * This sets the board of game to the board after the first n moves:
+     * the last checkpoint at or before n, then the moves after it in one
+     * batch
+     *
+     * @param n
+     * @param game
+     * @throws IndexOutOfBoundsException if n is past the last move
+     */
+    public void replay(long n, IGame game) {
+        if (n < 0 || n > this.size) {
+            throw new IndexOutOfBoundsException("No move " + n + " in a journal of "
+                + this.size);
+        }
+        long checkpoint = Math.min(n / this.interval, this.checkpoints.size() - 1);
+        if (checkpoint < 0) {
+            throw new IllegalStateException("The journal has no checkpoint");
+        }
+        this.checkpoints.load((int) checkpoint, game);
+        List<Move> batch = new ArrayList<>();
+        for (long i = checkpoint * this.interval; i < n; i++) {
+            batch.add(this.move(i));
+        }
+        if (!batch.isEmpty()) {
+            game.apply(batch);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.checkpoints.close();
+    }
+
+    /*
+     * This returns the color game scores
+     */
+    private static Color targetOf(IGame game) {
+        if (game instanceof Game) {
+            return ((Game) game).getTarget();
+        }
+        if (game instanceof ArrayGame) {
+            return ((ArrayGame) game).getTarget();
+        }
+        if (game instanceof PersistentGame) {
+            return ((PersistentGame) game).getBoard().target();
+        }
+        throw new IllegalArgumentException("The target color of "
+            + game.getClass().getSimpleName() + " is not known");
+    }
+
+    static Path checkpointsOf(Path file) {
+        return file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Records the moves of one game as they are made
+     */
+    public static final class Writer implements Closeable, Flushable {
+        private final IGame game;
+        private final int interval;
+        private final FileChannel channel;
+        private final BoardStore.Appender checkpoints;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD * 4096);
+        private long size;
+
+        private Writer(Path file, IGame game, Color target, int interval)
+            throws IOException {
+            if (interval < 1) {
+                throw new IllegalArgumentException("The checkpoint interval must be positive");
+            }
+            this.game = game;
+            this.interval = interval;
+            Path store = checkpointsOf(file);
+            Files.deleteIfExists(store);
+            Files.deleteIfExists(BoardStore.indexOf(store));
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            BoardStore.Appender appender = null;
+            try {
+                appender = BoardStore.append(store);
+                appender.append(game.getRoot());
+            }
+            catch (IOException | RuntimeException e) {
+                try {
+                    this.channel.close();
+                    if (appender != null) {
+                        appender.close();
+                    }
+                }
+                catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            this.checkpoints = appender;
+            this.buffer.putInt(MAGIC).putInt(game.max_depth())
+                .putInt(target.getRGB()).putInt(interval);
+        }
+
+        /*
+         * This makes move on the game and records it
+         *
+         * @param move
+         * @throws IllegalArgumentException if the move is invalid, it is
+         *         then not recorded
+         * @throws IOException
+         */
+        public void apply(Move move) throws IOException {
+            this.game.apply(List.of(move));
+            this.record(move);
+        }
+
+        /*
+         * This records a move that was already made on the game
+         *
+         * @param move
+         * @throws IOException
+         */
+        public void record(Move move) throws IOException {
+            if (this.buffer.remaining() < RECORD) {
+                this.drain();
+            }
+            this.buffer.put((byte) move.getKind().ordinal()).putInt(move.getX())
+                .putInt(move.getY()).putLong(move.getSeed());
+            this.size++;
+            if (this.size % this.interval == 0) {
+                this.checkpoints.append(this.game.getRoot());
+            }
+        }
+
+        /*
+         * This returns the number of moves recorded
+         *
+         * @return size
+         */
+        public long size() {
+            return this.size;
+        }
+
+        /*
+         * This writes the buffered moves and forces them to the device,
+         * then writes the buffered checkpoints (which force their own data)
+         *
+         * @throws IOException
+         */
+        @Override
+        public void flush() throws IOException {
+            this.drain();
+            this.channel.force(false);
+            this.checkpoints.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.flush();
+            }
+            finally {
+                this.channel.close();
+                this.checkpoints.close();
+            }
+        }
+
+        private void drain() throws IOException {
+            this.buffer.flip();
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class MoveJournalTest {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("journal");
+        this.file = this.dir.resolve("session.journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Path checkpoints = MoveJournal.checkpointsOf(this.file);
+        Files.deleteIfExists(BoardStore.indexOf(checkpoints));
+        Files.deleteIfExists(checkpoints);
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.dir);
+    }
+
+    /*
+     * This checks that the board at every move of a session is rebuilt
+     * from the journal, and that the moves read back are the ones made
+     */
+    @Test
+    public void replay() throws IOException {
+        Game game = new Game(4, Color.red, 6L);
+        SplittableRandom rand = new SplittableRandom(2);
+        List<Move> moves = new ArrayList<>();
+        List<long[]> hashes = new ArrayList<>();
+        hashes.add(Zobrist.hashes(game.getRoot()));
+        try (MoveJournal.Writer journal = MoveJournal.create(this.file, game, 10)) {
+            for (int i = 0; i < 95; i++) {
+                Move move = game.snapshot().randomMove(rand);
+                journal.apply(move);
+                moves.add(move);
+                hashes.add(Zobrist.hashes(game.getRoot()));
+            }
+            try {
+                journal.apply(Move.rotate(100000));
+                fail();
+            }
+            catch (IllegalArgumentException e) {
+                //expected, and not recorded
+            }
+            assertEquals(95, journal.size());
+        }
+
+        try (MoveJournal journal = MoveJournal.open(this.file)) {
+            assertEquals(95, journal.size());
+            assertEquals(4, journal.maxDepth());
+            assertEquals(Color.red, journal.target());
+            for (int i = 0; i < 95; i++) {
+                assertEquals(moves.get(i), journal.move(i));
+            }
+            for (int n = 0; n <= 95; n++) {
+                assertArrayEquals("move " + n, hashes.get(n),
+                    Zobrist.hashes(journal.replay(n).getRoot()));
+            }
+            PersistentGame other = new PersistentGame(4, Color.red);
+            journal.replay(57, other);
+            assertArrayEquals(hashes.get(57), Zobrist.hashes(other.getRoot()));
+        }
+    }
+
+    /*
+     * This checks that a record cut short by a crash is not read
+     */
+    @Test
+    public void tornRecord() throws IOException {
+        Game game = new Game(3, Color.red, 1L);
+        try (MoveJournal.Writer journal = MoveJournal.create(this.file, game, 4)) {
+            journal.apply(Move.rotate(0));
+        }
+        Files.write(this.file, new byte[] { 1, 0, 0 }, StandardOpenOption.APPEND);
+        try (MoveJournal journal = MoveJournal.open(this.file)) {
+            assertEquals(1, journal.size());
+            assertArrayEquals(Zobrist.hashes(game.getRoot()),
+                Zobrist.hashes(journal.replay(1).getRoot()));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.SplittableRandom;
+
+/**
+ * Picks the moves of a headless game, see {@link Tournament}. One strategy
+ * is shared by all the games of a tournament and called from many threads
+ * at once, so it must keep no state of its own; each game hands it its own
+ * random generator.
+ *
+ * @author Daniel Xu
+ */
+public interface MoveStrategy {
+
+    /**
+     * Plays a random legal move.
+     */
+    MoveStrategy RANDOM = (board, rand) -> board.randomMove(rand);
+
+    /**
+     * Picks the next move of a game
+     *
+     * @param board the board of the game as it stands, never changed
+     * @param rand the random generator of the game
+     * @return the move, or null to end the game
+     */
+    Move next(PersistentBoard board, SplittableRandom rand);
+
+    /**
+     * Returns a strategy that tries samples random moves on the board and
+     * plays the one with the best perimeter score after it
+     *
+     * @param samples the number of moves to try
+     * @return the strategy
+     */
+    static MoveStrategy greedy(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be positive");
+        }
+        return (board, rand) -> {
+            Move best = null;
+            int bestScore = Integer.MIN_VALUE;
+            for (int i = 0; i < samples; i++) {
+                Move move = board.randomMove(rand);
+                if (move == null) {
+                    break;
+                }
+                int score = board.apply(move).perimeterScore();
+                if (score > bestScore) {
+                    best = move;
+                    bestScore = score;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Returns the strategy with the given name: "random", or "greedy" with
+     * an optional number of samples after a colon ("greedy:32")
+     *
+     * @param name the name
+     * @return the strategy
+     */
+    static MoveStrategy named(String name) {
+        if (name.equals("random")) {
+            return RANDOM;
+        }
+        if (name.equals("greedy")) {
+            return greedy(16);
+        }
+        if (name.startsWith("greedy:")) {
+            return greedy(Integer.parseInt(name.substring("greedy:".length())));
+        }
+        throw new IllegalArgumentException("Unknown strategy: " + name);
+    }
+}
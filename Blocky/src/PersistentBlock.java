@@ -0,0 +1,177 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A read only IBlock view of one node of a {@link PersistentBoard}, at the
+ * position it has on that board. Boards never change, so every method that
+ * would change the block throws UnsupportedOperationException; moves are
+ * made on the board (or through {@link PersistentGame}) instead.
+ *
+ * @author Daniel Xu
+ */
+public final class PersistentBlock implements IBlock {
+
+    private final PersistentBoard.Node node;
+    private final int x;
+    private final int y;
+    private final int side;
+
+    /*
+     * This constructs a view of node with top left corner (x, y)
+     *
+     * @param node
+     * @param x
+     * @param y
+     * @param side
+     */
+    PersistentBlock(PersistentBoard.Node node, int x, int y, int side) {
+        this.node = node;
+        this.x = x;
+        this.y = y;
+        this.side = side;
+    }
+
+    @Override
+    public int depth() {
+        return this.node.depth;
+    }
+
+    @Override
+    public void smash(int maxDepth) {
+        throw readOnly();
+    }
+
+    @Override
+    public void smash(int maxDepth, SplittableRandom random) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<IBlock> children() {
+        List<IBlock> blockList = new ArrayList<>(4);
+        if (!this.node.isLeaf()) {
+            for (int i = 0; i < 4; i++) {
+                blockList.add(this.getChild(i));
+            }
+        }
+        return blockList;
+    }
+
+    @Override
+    public void rotate() {
+        throw readOnly();
+    }
+
+    @Override
+    public Color getColor() {
+        return this.node.color == ArrayTree.NO_COLOR ? null
+            : COLORS[this.node.color];
+    }
+
+    @Override
+    public void setColor(Color c) {
+        throw readOnly();
+    }
+
+    @Override
+    public Point getTopLeft() {
+        return new Point(this.x, this.y);
+    }
+
+    @Override
+    public Point getBotRight() {
+        return new Point(this.x + this.side, this.y + this.side);
+    }
+
+    @Override
+    public boolean isleaf() {
+        return this.node.isLeaf();
+    }
+
+    @Override
+    public IBlock getChild(int i) {
+        if (this.node.isLeaf() || i < 0 || i > 3) {
+            return null;
+        }
+        int half = this.side / 2;
+        return new PersistentBlock(this.node.kids[i], this.x + Game.subX(i, half),
+            this.y + Game.subY(i, half), half);
+    }
+
+    @Override
+    public IBlock getTopLeftTree() {
+        return this.getChild(0);
+    }
+
+    @Override
+    public IBlock getTopRightTree() {
+        return this.getChild(1);
+    }
+
+    @Override
+    public IBlock getBotLeftTree() {
+        return this.getChild(3);
+    }
+
+    @Override
+    public IBlock getBotRightTree() {
+        return this.getChild(2);
+    }
+
+    @Override
+    public void setTopLeftTree(IBlock block) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setTopRightTree(IBlock block) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setBotLeftTree(IBlock block) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setBotRightTree(IBlock block) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setTopLeft(Point topLeft) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setBotRight(Point botRight) {
+        throw readOnly();
+    }
+
+    /*
+     * Two views are equal when they show the same node at the same place
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentBlock) {
+            PersistentBlock other = (PersistentBlock) o;
+            return this.node == other.node && this.x == other.x
+                && this.y == other.y;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return (System.identityHashCode(this.node) * 31 + this.x) * 31 + this.y;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException(
+            "Blocks of a persistent board cannot be changed");
+    }
+}
@@ -0,0 +1,795 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * An immutable Blocky board. swap(), rotate() and smash() leave this board
+ * as it is and return a new one that shares every subtree the move did not
+ * touch: only the nodes on the path from the root to the changed blocks are
+ * copied, so any board can be kept as a snapshot or an undo step for free.
+ * A move copies one node per level, O(depth) time and memory.
+ *
+ * === Nodes ===
+ *  - a node only knows its depth, its color and its four children in
+ *    children() order; the bounds of a block follow from its position, like
+ *    the implicit geometry of Game, so a subtree can move without changes
+ *  - levels()[k] is the number of blocks k levels below the node
+ *    (levels()[0] is the node itself), which turns a BFS id into a root to
+ *    block path without a BFS. The counts are not part of a move: a
+ *    rotate, or a swap of blocks with the same counts (two leaves, say),
+ *    leaves every count on its path as it was and the copies share the
+ *    arrays; otherwise a copied node sums the counts of its kids the
+ *    first time an id is looked up through it, O(depth^2) once per board.
+ *    A board that is only kept, and one reached by such a rotate or swap,
+ *    costs O(depth); one whose ids were used after a smash or an uneven
+ *    swap holds up to depth + 1 counts per copied node on top
+ *  - top/right/bottom/left count the unit cells of the target color along
+ *    each side of the node, so the perimeter score of a board is read off
+ *    its root and a move only recounts the copied path
+ *  - hash is the hash of the subtree (see Zobrist), which does not depend
+ *    on where the subtree is, so a move only hashes the copied path too
+ *
+ * The blocks handed out are {@link PersistentBlock} views that cannot be
+ * changed.
+ *
+ * @author Daniel Xu
+ */
+public final class PersistentBoard {
+
+    private final Node root;
+    private final int maxDepth;
+    private final int extent;
+    private final Color target;
+    private final int targetIndex;
+
+    /*
+     * This constructs a board over root, all boards of one game share
+     * maxDepth, extent and target
+     */
+    private PersistentBoard(Node root, int maxDepth, int extent, Color target,
+        int targetIndex) {
+        this.root = root;
+        this.maxDepth = maxDepth;
+        this.extent = extent;
+        this.target = target;
+        this.targetIndex = targetIndex;
+    }
+
+    /*
+     * This builds a random board with the process of Game.random_init():
+     * smash the root, then smash random leaves until one of the new blocks
+     * reaches maxDepth
+     *
+     * @param maxDepth
+     * @param target
+     * @param rand
+     * @return board
+     */
+    public static PersistentBoard random(int maxDepth, Color target,
+        SplittableRandom rand) {
+        PersistentBoard board = new PersistentBoard(null, maxDepth,
+            Game.extentFor(maxDepth), target, targetIndex(target));
+        board = board.withRoot(board.leaf(0, ArrayTree.NO_COLOR));
+        if (maxDepth == 0) {
+            return board;
+        }
+        board = board.smash(0, rand);
+        int checkDepth = 1;
+        while (checkDepth < maxDepth) {
+            int pick = 1 + rand.nextInt(board.size() - 1);
+            Node node = board.find(pick, null);
+            if (node.isLeaf() && node.depth < maxDepth) {
+                board = board.smash(pick, rand);
+                checkDepth = node.depth + 1;
+            }
+        }
+        return board;
+    }
+
+    /*
+     * This copies the tree under root, any IBlock implementation, into a
+     * board. Only palette colors (or null) can be stored.
+     *
+     * @param root
+     * @param maxDepth
+     * @param target
+     * @return board
+     */
+    public static PersistentBoard of(IBlock root, int maxDepth, Color target) {
+        int extent = root.getBotRight().getX() - root.getTopLeft().getX();
+        if (extent >> maxDepth == 0) {
+            throw new IllegalStateException("A root of size " + extent
+                + " is too small for a board of max depth " + maxDepth);
+        }
+        PersistentBoard board = new PersistentBoard(null, maxDepth, extent,
+            target, targetIndex(target));
+        return board.withRoot(board.copy(root, 0));
+    }
+
+    public int maxDepth() {
+        return this.maxDepth;
+    }
+
+    public Color target() {
+        return this.target;
+    }
+
+    /*
+     * This returns the size of the root block
+     *
+     * @return extent
+     */
+    public int extent() {
+        return this.extent;
+    }
+
+    /*
+     * This returns the number of blocks on the board
+     *
+     * @return size
+     */
+    public int size() {
+        int size = 0;
+        for (int count : this.root.levels()) {
+            size += count;
+        }
+        return size;
+    }
+
+    /*
+     * This returns the perimeter score of the board, kept up to date by
+     * every move
+     *
+     * @return score
+     */
+    public int perimeterScore() {
+        Node r = this.root;
+        return r.top + r.right + r.bottom + r.left;
+    }
+
+    public PersistentBlock getRoot() {
+        return new PersistentBlock(this.root, 0, 0, this.extent);
+    }
+
+    /*
+     * This returns the block with BFS id pos, null if the board has fewer
+     * blocks
+     *
+     * @param pos
+     * @return block
+     */
+    public PersistentBlock getBlock(int pos) {
+        int[] corner = new int[3];
+        Node node = this.find(pos, corner);
+        return node == null ? null
+            : new PersistentBlock(node, corner[0], corner[1], corner[2]);
+    }
+
+    /*
+     * This returns the depth of the block with id pos, -1 if there is none
+     *
+     * @param pos
+     * @return depth
+     */
+    public int depthOf(int pos) {
+        Node node = this.find(pos, null);
+        return node == null ? -1 : node.depth;
+    }
+
+    /*
+     * This checks if the block with id pos is a leaf
+     *
+     * @param pos
+     * @return boolean
+     */
+    public boolean isLeaf(int pos) {
+        Node node = this.find(pos, null);
+        return node != null && node.isLeaf();
+    }
+
+    /*
+     * This returns the board with the blocks x and y exchanged. Both must
+     * be at the same depth and neither can be the root.
+     *
+     * @param x
+     * @param y
+     * @return board
+     */
+    public PersistentBoard swap(int x, int y) {
+        int[] pathX = this.path(x);
+        int[] pathY = this.path(y);
+        if (pathX == null || pathY == null || pathX.length == 0
+            || pathX.length != pathY.length) {
+            throw new IllegalArgumentException("Cannot swap blocks " + x
+                + " and " + y);
+        }
+        if (x == y) {
+            return this;
+        }
+        Node nodeX = this.at(pathX);
+        Node nodeY = this.at(pathY);
+        boolean same = nodeX.sameCounts(nodeY);
+        Node swapped = this.replace(this.root, pathX, 0, nodeY, same);
+        return this.withRoot(this.replace(swapped, pathY, 0, nodeX, same));
+    }
+
+    /*
+     * This returns the board with the sub blocks of block pos rotated
+     * clockwise. Rotating a leaf gives the same board.
+     *
+     * @param pos
+     * @return board
+     */
+    public PersistentBoard rotate(int pos) {
+        return this.rotateAt(this.requirePath(pos));
+    }
+
+    /*
+     * This returns the board with the leaf pos smashed into four leaves
+     * colored from a SplittableRandom seeded with seed, the same colors
+     * Block.smash() draws from that seed
+     *
+     * @param pos
+     * @param seed
+     * @return board
+     */
+    public PersistentBoard smash(int pos, long seed) {
+        return this.smash(pos, new SplittableRandom(seed));
+    }
+
+    /*
+     * Same as smash(pos, seed), with the colors drawn from rand
+     *
+     * @param pos
+     * @param rand
+     * @return board
+     */
+    public PersistentBoard smash(int pos, SplittableRandom rand) {
+        int[] path = this.requirePath(pos);
+        Node node = this.at(path);
+        if (!node.isLeaf() || node.depth >= this.maxDepth) {
+            throw new IllegalArgumentException("Cannot smash block " + pos);
+        }
+        //Same order as Block.smash(): top left, bottom right, top right,
+        //bottom left
+        int len = IBlock.COLORS.length;
+        int topLeft = rand.nextInt(len);
+        int botRight = rand.nextInt(len);
+        int topRight = rand.nextInt(len);
+        int botLeft = rand.nextInt(len);
+        int d = node.depth + 1;
+        Node smashed = this.inner(node.depth, new Node[] { this.leaf(d, topLeft),
+            this.leaf(d, topRight), this.leaf(d, botRight), this.leaf(d, botLeft) },
+            null);
+        return this.replaceWith(path, smashed, false);
+    }
+
+    /*
+     * This returns the board with the block at path (slots from the root)
+     * replaced by a copy of block. Used to follow changes made to a
+     * mutable tree; the copy costs the size of block.
+     *
+     * @param path
+     * @param block
+     * @return board
+     */
+    PersistentBoard replaceAt(int[] path, IBlock block) {
+        return this.replaceWith(path, this.copy(block, path.length), false);
+    }
+
+    /*
+     * Same as rotate(id) for the block at path
+     *
+     * @param path
+     * @return board
+     */
+    PersistentBoard rotateAt(int[] path) {
+        Node node = this.at(path);
+        if (node.isLeaf()) {
+            return this;
+        }
+        Node[] k = node.kids;
+        //The same blocks per level, the counts of node and its ancestors hold
+        Node rotated = this.inner(node.depth, new Node[] { k[3], k[0], k[1], k[2] },
+            node);
+        return this.replaceWith(path, rotated, true);
+    }
+
+    /*
+     * This returns the hash of the board (see Zobrist). Every node keeps
+     * the hash of its subtree, so this is the hash of the root and a move
+     * only hashes the nodes it copies.
+     *
+     * @return hash
+     */
+    public long hash() {
+        return this.root.hash;
+    }
+
+    /*
+     * This returns a hash that is the same for the four boards that only
+     * differ by rotations of the root
+     *
+     * @return canonical hash
+     */
+    public long canonicalHash() {
+        Node r = this.root;
+        if (r.isLeaf()) {
+            return r.hash;
+        }
+        return Zobrist.canonical(Zobrist.rotations(r.kids[0].hash,
+            r.kids[1].hash, r.kids[2].hash, r.kids[3].hash));
+    }
+
+    /*
+     * Two boards are equal when they have the same blocks and colors in
+     * the same places, with the same max depth and target
+     *
+     * @return boolean
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PersistentBoard)) {
+            return false;
+        }
+        PersistentBoard other = (PersistentBoard) o;
+        return this.root.hash == other.root.hash
+            && this.maxDepth == other.maxDepth && this.extent == other.extent
+            && this.target.equals(other.target)
+            && sameTree(this.root, other.root);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.root.hash);
+    }
+
+    /*
+     * This checks if a and b hold the same blocks and colors
+     */
+    private static boolean sameTree(Node a, Node b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.isLeaf() || b.isLeaf()) {
+            return a.isLeaf() && b.isLeaf() && a.color == b.color;
+        }
+        for (int i = 0; i < 4; i++) {
+            if (!sameTree(a.kids[i], b.kids[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * This lists the moves that can change this board: swaps of two blocks
+     * of the same depth (leaving out pairs that are the same subtree or two
+     * leaves of one color), rotations of blocks whose sub blocks are not
+     * all the same color leaf, and smashes of leaves above max depth, each
+     * with its own seed from rand. Ids are found by one BFS of the board.
+     *
+     * @param rand
+     * @return moves
+     */
+    public List<Move> moves(SplittableRandom rand) {
+        List<Move> moves = new ArrayList<>();
+        List<Node> level = new ArrayList<>();
+        List<Node> next = new ArrayList<>();
+        level.add(this.root);
+        int first = 0;
+        while (!level.isEmpty()) {
+            for (int a = 0; a < level.size(); a++) {
+                Node node = level.get(a);
+                int id = first + a;
+                if (node.isLeaf()) {
+                    if (node.depth < this.maxDepth) {
+                        moves.add(Move.smash(id, rand.nextLong()));
+                    }
+                }
+                else {
+                    if (!sameLeaves(node.kids[0], node.kids[1])
+                        || !sameLeaves(node.kids[1], node.kids[2])
+                        || !sameLeaves(node.kids[2], node.kids[3])) {
+                        moves.add(Move.rotate(id));
+                    }
+                    Collections.addAll(next, node.kids);
+                }
+                if (id == 0) {
+                    continue;
+                }
+                for (int b = a + 1; b < level.size(); b++) {
+                    if (!sameLeaves(node, level.get(b))) {
+                        moves.add(Move.swap(id, first + b));
+                    }
+                }
+            }
+            first += level.size();
+            List<Node> tmp = level;
+            level = next;
+            next = tmp;
+            next.clear();
+        }
+        return moves;
+    }
+
+    /*
+     * This picks one legal move at random without listing all of them:
+     * a random block, then a swap with another block of its level, a
+     * rotation or a smash, whichever of them applies, starting from a
+     * random kind. Returns null when the board has no move at all.
+     *
+     * @param rand
+     * @return move or null
+     */
+    public Move randomMove(SplittableRandom rand) {
+        int[] levels = this.root.levels();
+        int id = rand.nextInt(this.size());
+        int level = 0;
+        int levelStart = 0;
+        while (id >= levelStart + levels[level]) {
+            levelStart += levels[level];
+            level++;
+        }
+        Node node = this.find(id, null);
+        int kind = rand.nextInt(3);
+        for (int k = 0; k < 3; k++, kind = (kind + 1) % 3) {
+            if (kind == 0 && level > 0 && levels[level] > 1) {
+                int other = levelStart + rand.nextInt(levels[level] - 1);
+                return Move.swap(id, other >= id ? other + 1 : other);
+            }
+            if (kind == 1 && !node.isLeaf()) {
+                return Move.rotate(id);
+            }
+            if (kind == 2 && node.isLeaf() && node.depth < this.maxDepth) {
+                return Move.smash(id, rand.nextLong());
+            }
+        }
+        return null;
+    }
+
+    /*
+     * This checks if a and b are the same subtree, or leaves of one color
+     */
+    private static boolean sameLeaves(Node a, Node b) {
+        return a == b || (a.isLeaf() && b.isLeaf() && a.color == b.color);
+    }
+
+    /*
+     * This returns the board after move
+     *
+     * @param move
+     * @return board
+     */
+    public PersistentBoard apply(Move move) {
+        switch (move.getKind()) {
+            case SWAP:
+                return this.swap(move.getX(), move.getY());
+            case ROTATE:
+                return this.rotate(move.getX());
+            default:
+                return this.smash(move.getX(), move.getSeed());
+        }
+    }
+
+    /*
+     * This returns the board after all of moves. Nothing is undone on an
+     * invalid move, this board is simply still the board before the batch.
+     *
+     * @param moves
+     * @return board
+     */
+    public PersistentBoard apply(List<Move> moves) {
+        PersistentBoard board = this;
+        for (Move move : moves) {
+            board = board.apply(move);
+        }
+        return board;
+    }
+
+    /*
+     * This builds the 2^max_depth by 2^max_depth grid of leaves
+     *
+     * @return grid
+     */
+    public IBlock[][] flatten() {
+        int gridSize = 1 << this.maxDepth;
+        IBlock[][] grid = new IBlock[gridSize][gridSize];
+        this.paint(grid, this.root, 0, 0, this.extent, this.extent >> this.maxDepth);
+        return grid;
+    }
+
+    /*
+     * This fills the cells of grid covered by node, whose top left corner
+     * is (x, y)
+     */
+    private void paint(IBlock[][] grid, Node node, int x, int y, int side,
+        int unitS) {
+        if (node.isLeaf()) {
+            Game.fill(grid, new PersistentBlock(node, x, y, side), x, y, side,
+                unitS);
+            return;
+        }
+        int half = side / 2;
+        for (int i = 0; i < 4; i++) {
+            this.paint(grid, node.kids[i], x + Game.subX(i, half),
+                y + Game.subY(i, half), half, unitS);
+        }
+    }
+
+    /*
+     * This returns the node with BFS id pos, or null. When corner is given
+     * it receives the x, y and side of the block.
+     *
+     * @param pos
+     * @param corner
+     * @return node
+     */
+    private Node find(int pos, int[] corner) {
+        int[] levels = this.root.levels();
+        int level = 0;
+        int i = pos;
+        while (level < levels.length && i >= levels[level]) {
+            i -= levels[level];
+            level++;
+        }
+        if (pos < 0 || level == levels.length) {
+            return null;
+        }
+        Node node = this.root;
+        int x = 0;
+        int y = 0;
+        int side = this.extent;
+        while (node.depth < level) {
+            side /= 2;
+            for (int q = 0; q < 4; q++) {
+                int count = node.kids[q].count(level);
+                if (i < count) {
+                    x += Game.subX(q, side);
+                    y += Game.subY(q, side);
+                    node = node.kids[q];
+                    break;
+                }
+                i -= count;
+            }
+        }
+        if (corner != null) {
+            corner[0] = x;
+            corner[1] = y;
+            corner[2] = side;
+        }
+        return node;
+    }
+
+    /*
+     * This returns the slots from the root down to block pos, or null
+     *
+     * @param pos
+     * @return path
+     */
+    private int[] path(int pos) {
+        Node target = this.find(pos, null);
+        if (target == null) {
+            return null;
+        }
+        int level = target.depth;
+        int i = pos;
+        for (int k = 0; k < level; k++) {
+            i -= this.root.levels()[k];
+        }
+        int[] path = new int[level];
+        Node node = this.root;
+        for (int d = 0; d < level; d++) {
+            for (int q = 0; q < 4; q++) {
+                int count = node.kids[q].count(level);
+                if (i < count) {
+                    path[d] = q;
+                    node = node.kids[q];
+                    break;
+                }
+                i -= count;
+            }
+        }
+        return path;
+    }
+
+    private int[] requirePath(int pos) {
+        int[] path = this.path(pos);
+        if (path == null) {
+            throw new IllegalArgumentException("No block with id " + pos);
+        }
+        return path;
+    }
+
+    /*
+     * This returns the node at the end of path
+     */
+    private Node at(int[] path) {
+        Node node = this.root;
+        for (int q : path) {
+            node = node.kids[q];
+        }
+        return node;
+    }
+
+    /*
+     * This returns a copy of node with the node at path[from..] replaced
+     * by replacement. Only the nodes along the path are copied. When
+     * sameCounts the replacement has as many blocks per level as the node
+     * it replaces, and the copies share the counts of the nodes they copy.
+     */
+    private Node replace(Node node, int[] path, int from, Node replacement,
+        boolean sameCounts) {
+        if (from == path.length) {
+            return replacement;
+        }
+        Node[] kids = node.kids.clone();
+        kids[path[from]] = this.replace(kids[path[from]], path, from + 1,
+            replacement, sameCounts);
+        return this.inner(node.depth, kids, sameCounts ? node : null);
+    }
+
+    private PersistentBoard withRoot(Node newRoot) {
+        return new PersistentBoard(newRoot, this.maxDepth, this.extent,
+            this.target, this.targetIndex);
+    }
+
+    /*
+     * This returns the board with the node at path replaced by replacement
+     */
+    private PersistentBoard replaceWith(int[] path, Node replacement,
+        boolean sameCounts) {
+        return this.withRoot(this.replace(this.root, path, 0, replacement,
+            sameCounts));
+    }
+
+    /*
+     * This copies block into nodes
+     */
+    private Node copy(IBlock block, int depth) {
+        if (block.isleaf()) {
+            return this.leaf(depth, ArrayTree.paletteIndex(block.getColor()));
+        }
+        Node[] kids = new Node[4];
+        for (int i = 0; i < 4; i++) {
+            kids[i] = this.copy(block.getChild(i), depth + 1);
+        }
+        return this.inner(depth, kids, null);
+    }
+
+    /*
+     * This creates a leaf node and counts its target cells
+     */
+    private Node leaf(int depth, int color) {
+        int cells = color == this.targetIndex ? this.cells(depth) : 0;
+        return new Node(depth, color, null, LEAF_LEVELS, cells, cells, cells,
+            cells, Zobrist.leaf(depth,
+                color == ArrayTree.NO_COLOR ? null : IBlock.COLORS[color]));
+    }
+
+    /*
+     * This creates a split node over kids, in children() order, sharing
+     * the level counts of like if it is given
+     */
+    private Node inner(int depth, Node[] kids, Node like) {
+        return new Node(depth, ArrayTree.NO_COLOR, kids,
+            like == null ? null : like.levels,
+            kids[0].top + kids[1].top,
+            kids[1].right + kids[2].right,
+            kids[3].bottom + kids[2].bottom,
+            kids[0].left + kids[3].left,
+            Zobrist.node(kids[0].hash, kids[1].hash, kids[2].hash, kids[3].hash));
+    }
+
+    /*
+     * This returns the palette index of target, or a value no block has
+     * when target is not in the palette (then nothing scores)
+     */
+    private static int targetIndex(Color target) {
+        for (int i = 0; i < IBlock.COLORS.length; i++) {
+            if (IBlock.COLORS[i].equals(target)) {
+                return i;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /*
+     * This returns how many unit cells a block at depth spans per side
+     */
+    private int cells(int depth) {
+        return depth > this.maxDepth ? 0 : 1 << (this.maxDepth - depth);
+    }
+
+    private static final int[] LEAF_LEVELS = { 1 };
+
+    /**
+     * One immutable block of a {@link PersistentBoard}
+     */
+    static final class Node {
+        final int depth;
+        final int color;
+        final Node[] kids;
+        final int top;
+        final int right;
+        final int bottom;
+        final int left;
+        //The hash of the subtree, the same wherever the subtree is
+        final long hash;
+        //Blocks per level of the subtree, counted on first use unless a
+        //move could hand over the counts of the node it copied. Boards are
+        //shared between threads, volatile publishes the filled array.
+        private volatile int[] levels;
+
+        Node(int depth, int color, Node[] kids, int[] levels, int top,
+            int right, int bottom, int left, long hash) {
+            this.depth = depth;
+            this.color = color;
+            this.kids = kids;
+            this.levels = levels;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.left = left;
+            this.hash = hash;
+        }
+
+        boolean isLeaf() {
+            return this.kids == null;
+        }
+
+        /*
+         * This returns the number of blocks k levels below this node, for
+         * every k, summing the counts of the kids the first time
+         */
+        int[] levels() {
+            int[] counts = this.levels;
+            if (counts == null) {
+                if (this.isLeaf()) {
+                    counts = LEAF_LEVELS;
+                }
+                else {
+                    int height = 0;
+                    for (Node kid : this.kids) {
+                        height = Math.max(height, kid.levels().length);
+                    }
+                    counts = new int[height + 1];
+                    counts[0] = 1;
+                    for (Node kid : this.kids) {
+                        int[] below = kid.levels();
+                        for (int k = 0; k < below.length; k++) {
+                            counts[k + 1] += below[k];
+                        }
+                    }
+                }
+                this.levels = counts;
+            }
+            return counts;
+        }
+
+        /*
+         * This checks if other has as many blocks per level as this node,
+         * without counting them: both are leaves, or both were counted
+         */
+        boolean sameCounts(Node other) {
+            int[] mine = this.levels;
+            int[] theirs = other.levels;
+            return mine != null && theirs != null && Arrays.equals(mine, theirs);
+        }
+
+        /*
+         * This returns the number of blocks of this subtree at depth level
+         */
+        int count(int level) {
+            int[] counts = this.levels();
+            int k = level - this.depth;
+            return k >= 0 && k < counts.length ? counts[k] : 0;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * An IGame over {@link PersistentBoard}s. Every move replaces the current
+ * board by the one the move returns, and the old board goes on the undo
+ * stack. Boards share all untouched subtrees, so a step of history costs
+ * O(depth) nodes (plus the level counts a later id lookup may add to them,
+ * see PersistentBoard), and getBoard() is a snapshot that later moves never
+ * change.
+ *
+ * Blocks handed out by this game are read only views: rotate and smash
+ * blocks through rotate(id) and smash(id) here.
+ *
+ * The game is safe to share between threads. The current board is published
+ * with a volatile write after each move, so readers (getBoard(), getBlock(),
+ * flatten(), perimeter_score()) never lock and always see one whole board.
+ * Moves and the history are guarded by the game's lock.
+ *
+ * @author Daniel Xu
+ */
+public class PersistentGame implements IGame {
+
+    private final int max_depth;
+    private final Color target;
+    private volatile PersistentBoard board;
+    private final Deque<PersistentBoard> undo = new ArrayDeque<>();
+    private final Deque<PersistentBoard> redo = new ArrayDeque<>();
+
+    /*
+     * This constructs the game with max_depth and the color that will be
+     * used to count the points
+     *
+     * @param maxDepth
+     * @param target
+     */
+    PersistentGame(int maxDepth, Color target) {
+        this.max_depth = maxDepth;
+        this.target = target;
+        this.random_init();
+    }
+
+    /*
+     * This constructs the game on the board random_init(seed) generates
+     *
+     * @param maxDepth
+     * @param target
+     * @param seed
+     */
+    PersistentGame(int maxDepth, Color target, long seed) {
+        this.max_depth = maxDepth;
+        this.target = target;
+        this.random_init(seed);
+    }
+
+    @Override
+    public int max_depth() {
+        return this.max_depth;
+    }
+
+    /*
+     * This starts over on a new random board, the history is dropped
+     *
+     * @return root
+     */
+    @Override
+    public IBlock random_init() {
+        return this.random_init(new SplittableRandom().nextLong());
+    }
+
+    /*
+     * Same as random_init(), the same seed always gives the same board
+     *
+     * @param seed
+     * @return root
+     */
+    public synchronized IBlock random_init(long seed) {
+        this.reset(PersistentBoard.random(this.max_depth, this.target,
+            new SplittableRandom(seed)));
+        return this.getRoot();
+    }
+
+    @Override
+    public IBlock getBlock(int pos) {
+        return this.board.getBlock(pos);
+    }
+
+    @Override
+    public IBlock getRoot() {
+        return this.board.getRoot();
+    }
+
+    /*
+     * This swaps the blocks with ids x and y if they are at the same depth,
+     * like Game.swap() any other pair is ignored
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public synchronized void swap(int x, int y) {
+        int depth = this.board.depthOf(x);
+        if (x != y && depth > 0 && depth == this.board.depthOf(y)) {
+            this.push(this.board.swap(x, y));
+        }
+    }
+
+    /*
+     * This rotates the sub blocks of block id clockwise
+     *
+     * @param id
+     * @throws IllegalArgumentException if there is no block id
+     */
+    public synchronized void rotate(int id) {
+        this.push(this.board.rotate(id));
+    }
+
+    /*
+     * This smashes the leaf id, with colors from a random seed
+     *
+     * @param id
+     * @throws IllegalArgumentException if id is not a leaf above max_depth
+     */
+    public void smash(int id) {
+        this.smash(id, new SplittableRandom().nextLong());
+    }
+
+    /*
+     * This smashes the leaf id, with colors from seed
+     *
+     * @param id
+     * @param seed
+     * @throws IllegalArgumentException if id is not a leaf above max_depth
+     */
+    public synchronized void smash(int id, long seed) {
+        this.push(this.board.smash(id, seed));
+    }
+
+    /*
+     * This applies the batch as one step of history. Boards are never
+     * changed in place, so an invalid move simply leaves the current board.
+     *
+     * @param moves
+     */
+    @Override
+    public synchronized void apply(List<Move> moves) {
+        this.push(this.board.apply(moves));
+    }
+
+    @Override
+    public IBlock[][] flatten() {
+        return this.board.flatten();
+    }
+
+    /*
+     * The score is kept by the board itself, so this is O(1)
+     *
+     * @return score
+     */
+    @Override
+    public int perimeter_score() {
+        return this.board.perimeterScore();
+    }
+
+    /*
+     * Boards are shared between games and snapshots, so the blob is
+     * counted over a new grid every time
+     *
+     * @return score
+     */
+    @Override
+    public int blob_score() {
+        return BlobScorer.score(this.board.flatten(), this.target);
+    }
+
+    /*
+     * This copies root into a new board and drops the history
+     *
+     * @param root
+     */
+    @Override
+    public synchronized void setRoot(IBlock root) {
+        this.reset(PersistentBoard.of(root, this.max_depth, this.target));
+    }
+
+    /*
+     * This returns the current board. It is immutable, so it stays a
+     * snapshot of this moment whatever moves follow.
+     *
+     * @return board
+     */
+    public PersistentBoard getBoard() {
+        return this.board;
+    }
+
+    /*
+     * This makes board, for example an earlier snapshot, the current
+     * board; this can be undone like a move
+     *
+     * @param board
+     */
+    public synchronized void setBoard(PersistentBoard board) {
+        if (board.maxDepth() != this.max_depth
+            || !board.target().equals(this.target)) {
+            throw new IllegalArgumentException(
+                "The board belongs to a game of another depth or target");
+        }
+        this.push(board);
+    }
+
+    public synchronized boolean canUndo() {
+        return !this.undo.isEmpty();
+    }
+
+    public synchronized boolean canRedo() {
+        return !this.redo.isEmpty();
+    }
+
+    /*
+     * This goes back to the board before the last move
+     *
+     * @throws IllegalStateException if there is nothing to undo
+     */
+    public synchronized void undo() {
+        if (this.undo.isEmpty()) {
+            throw new IllegalStateException("Nothing to undo");
+        }
+        this.redo.push(this.board);
+        this.board = this.undo.pop();
+    }
+
+    /*
+     * This makes the last undone move again
+     *
+     * @throws IllegalStateException if there is nothing to redo
+     */
+    public synchronized void redo() {
+        if (this.redo.isEmpty()) {
+            throw new IllegalStateException("Nothing to redo");
+        }
+        this.undo.push(this.board);
+        this.board = this.redo.pop();
+    }
+
+    /*
+     * This records the current board in the history and moves on to next
+     */
+    private void push(PersistentBoard next) {
+        if (next != this.board) {
+            this.undo.push(this.board);
+            this.redo.clear();
+            this.board = next;
+        }
+    }
+
+    private void reset(PersistentBoard start) {
+        this.undo.clear();
+        this.redo.clear();
+        this.board = start;
+    }
+}
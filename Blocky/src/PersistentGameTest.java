@@ -0,0 +1,130 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class PersistentGameTest {
+
+    /*
+     * This checks that moves on a persistent game give the same board as
+     * the same moves on a Game over the same tree: grid, ids and score
+     */
+    @Test
+    public void matchesGame() {
+        PersistentGame game = new PersistentGame(4, Color.red, 21L);
+        Game reference = new Game(4, Color.red);
+        reference.setRoot(Block.copyOf(game.getRoot()));
+
+        List<Move> moves = List.of(Move.rotate(0), Move.swap(1, 3), Move.rotate(2));
+        game.apply(moves);
+        reference.apply(moves);
+        int leaf = 1;
+        while (!game.getBlock(leaf).isleaf() || game.getBlock(leaf).depth() == 4) {
+            leaf++;
+        }
+        game.smash(leaf, 5L);
+        reference.apply(List.of(Move.smash(leaf, 5L)));
+
+        assertEquals(reference.perimeter_score(), game.perimeter_score());
+        IBlock[][] expected = reference.flatten();
+        IBlock[][] actual = game.flatten();
+        for (int i = 0; i < expected.length; i++) {
+            for (int j = 0; j < expected.length; j++) {
+                assertEquals(expected[i][j].getColor(), actual[i][j].getColor());
+                assertEquals(expected[i][j].getTopLeft().getX(),
+                    actual[i][j].getTopLeft().getX());
+                assertEquals(expected[i][j].getTopLeft().getY(),
+                    actual[i][j].getTopLeft().getY());
+            }
+        }
+        for (int id = 0; id < game.getBoard().size(); id++) {
+            assertEquals(reference.getBlock(id).depth(), game.getBlock(id).depth());
+            assertEquals(reference.getBlock(id).getColor(),
+                game.getBlock(id).getColor());
+        }
+        assertNull(game.getBlock(game.getBoard().size()));
+    }
+
+    /*
+     * This checks that a snapshot is not changed by later moves, that undo
+     * and redo walk the history, and that a move only copies the path to
+     * the blocks it changes
+     */
+    @Test
+    public void snapshotsAndUndo() {
+        PersistentGame game = new PersistentGame(3, Color.red, 2L);
+        PersistentBoard snapshot = game.getBoard();
+        int score = game.perimeter_score();
+        IBlock untouched = snapshot.getBlock(4);
+
+        game.swap(1, 2);
+        game.rotate(0);
+        assertEquals(score, snapshot.perimeterScore());
+        assertTrue(game.canUndo());
+
+        game.undo();
+        game.undo();
+        assertSame(snapshot, game.getBoard());
+        assertFalse(game.canUndo());
+        game.redo();
+        assertEquals(untouched, game.getBoard().getBlock(4));
+        assertEquals(snapshot.getBlock(1).getColor(),
+            game.getBoard().getBlock(2).getColor());
+
+        //A new move drops the redo steps
+        game.swap(3, 4);
+        assertFalse(game.canRedo());
+
+        //An invalid batch leaves the board and the history as they were
+        PersistentBoard before = game.getBoard();
+        try {
+            game.apply(List.of(Move.rotate(0), Move.swap(0, 1)));
+            fail("the root cannot be swapped");
+        }
+        catch (IllegalArgumentException e) {
+            //expected
+        }
+        assertSame(before, game.getBoard());
+
+        try {
+            game.getRoot().rotate();
+            fail("persistent blocks are read only");
+        }
+        catch (UnsupportedOperationException e) {
+            //expected
+        }
+    }
+
+    /*
+     * This checks the ids of a board against a Game after many random
+     * moves: the level counts behind them are shared by rotates and even
+     * swaps and counted lazily after the other moves
+     */
+    @Test
+    public void idsFollowRandomMoves() {
+        PersistentBoard board = new PersistentGame(5, Color.red, 13L).getBoard();
+        Game reference = new Game(5, Color.red);
+        reference.setRoot(Block.copyOf(board.getRoot()));
+        SplittableRandom rand = new SplittableRandom(13);
+        for (int i = 0; i < 300; i++) {
+            Move move = board.randomMove(rand);
+            board = board.apply(move);
+            reference.apply(List.of(move));
+            if (i % 10 == 0) {
+                for (int id = 0; id < board.size(); id++) {
+                    assertEquals(reference.getBlock(id).depth(), board.depthOf(id));
+                    assertEquals(reference.getBlock(id).getColor(),
+                        board.getBlock(id).getColor());
+                }
+                assertNull(board.getBlock(board.size()));
+            }
+        }
+    }
+}
@@ -51,5 +51,25 @@ public class Point {
     public String toString() {
         return "x: " + this.x + ", y: " + this.y;
     }
+    // ----------------------------------------------------------
+    /**
+     * @return true if o is a Point with the same coordinates
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof Point) {
+            Point other = (Point) o;
+            return this.x == other.x && this.y == other.y;
+        }
+        return false;
+    }
+    // ----------------------------------------------------------
+    /**
+     * @return a hash of the coordinates
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.x + this.y;
+    }
 
 }
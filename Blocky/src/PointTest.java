@@ -24,4 +24,18 @@ public class PointTest {
         assertNotNull(a);  
     }
 
+    /*
+     * This checks that points are equal by their coordinates and that
+     * equal points have the same hash code
+     */
+    @Test
+    public void testEquals() {
+        Point one = new Point(2, 3);
+        Point two = new Point(2, 3);
+        assertEquals(one, two);
+        assertEquals(one.hashCode(), two.hashCode());
+        assertNotEquals(one, new Point(3, 2));
+        assertNotEquals(one, null);
+    }
+
 }
@@ -0,0 +1,249 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+
+/**
+ * Draws a board into an image it keeps, and on each new board redraws only
+ * the blocks that changed. The board drawn last is kept as a tree of
+ * {@link ColoredBlock}s; a new board is copied into such a tree that reuses
+ * every unchanged subtree of the last one, so telling what changed is a
+ * reference comparison per block and drawing a move costs the blocks it
+ * moved, not the whole board. Only the areas that changed are repainted.
+ *
+ * Boards may be shown from any thread: the copy is made on the calling
+ * thread, the image is only drawn on the event dispatch thread.
+ *
+ * @author ericfouh
+ */
+class Squares
+    extends JPanel {
+    /**
+     * 
+     */
+    private static final long  serialVersionUID = 1L;
+    private static final int   PREF_W           = 500;
+    private static final int   PREF_H           = PREF_W;
+    //The last board handed to addQuadrant, on the calling thread
+    private ColoredBlock       shown;
+    //The board in the image, on the event dispatch thread
+    private ColoredBlock       drawn;
+    private int                extent;
+    private BufferedImage      image;
+
+
+    /**
+     * @param q the root of the quad tree to be displayed
+     */
+    public void addQuadrant(IBlock q) {
+        if (q != null) {
+            ColoredBlock board = ColoredBlock.of(q, this.shown);
+            int side = q.getBotRight().getX() - q.getTopLeft().getX();
+            this.shown = board;
+            if (SwingUtilities.isEventDispatchThread()) {
+                this.draw(board, side);
+            }
+            else {
+                SwingUtilities.invokeLater(() -> this.draw(board, side));
+            }
+        }
+    }
+
+
+    /**
+     * Blanks the panel
+     */
+    public void clear() {
+        this.shown = null;
+        Runnable blank = () -> {
+            this.drawn = null;
+            this.image = null;
+            this.repaint();
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            blank.run();
+        }
+        else {
+            SwingUtilities.invokeLater(blank);
+        }
+    }
+
+
+    /*
+     * This draws board, whose root is side units wide, over the board in
+     * the image, repaints the areas that changed and returns them, none if
+     * nothing did. Areas that overlap or share an edge are repainted as
+     * one, see merge(). It runs on the event dispatch thread.
+     */
+    List<Rectangle> draw(ColoredBlock board, int side) {
+        List<Rectangle> dirty = new ArrayList<>();
+        if (side != this.extent) {
+            this.extent = side;
+            this.drawn = null;
+            this.image = null;
+        }
+        boolean fresh = this.fitImage();
+        Graphics2D g = this.image.createGraphics();
+        this.paint(g, board, this.drawn, 0, 0, side, dirty);
+        g.dispose();
+        this.drawn = board;
+        if (fresh) {
+            dirty.clear();
+            dirty.add(new Rectangle(0, 0, this.image.getWidth(), this.image.getHeight()));
+        }
+        for (Rectangle r : dirty) {
+            this.repaint(r);
+        }
+        return dirty;
+    }
+
+
+    BufferedImage getImage() {
+        return this.image;
+    }
+
+
+    /*
+     * This makes a new image if there is none or the panel was resized, and
+     * draws the board drawn last into it. It returns whether it did.
+     */
+    private boolean fitImage() {
+        int size = Math.min(this.getWidth(), this.getHeight());
+        if (size < 2) {
+            size = PREF_W;
+        }
+        if (this.image != null && this.image.getWidth() == size) {
+            return false;
+        }
+        this.image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = this.image.createGraphics();
+        g.setColor(this.getBackground());
+        g.fillRect(0, 0, size, size);
+        //Blocks draw their top and left edges, this is the bottom and right
+        g.setColor(Color.BLACK);
+        g.drawLine(0, size - 1, size - 1, size - 1);
+        g.drawLine(size - 1, 0, size - 1, size - 1);
+        if (this.drawn != null) {
+            this.paint(g, this.drawn, null, 0, 0, this.extent, null);
+        }
+        g.dispose();
+        return true;
+    }
+
+
+    /*
+     * This draws every block of next at (x, y) that is not the same block
+     * in prev and adds its area to dirty. The areas under one block are
+     * merged before its parent's, so each merge only sees a few.
+     */
+    private void paint(Graphics2D g, ColoredBlock next, ColoredBlock prev,
+        int x, int y, int side, List<Rectangle> dirty) {
+        if (next == prev) {
+            return;
+        }
+        if (next.isLeaf() || prev == null || prev.isLeaf()) {
+            dirty.add(this.fill(g, next, x, y, side));
+            return;
+        }
+        int start = dirty.size();
+        int half = side / 2;
+        for (int i = 0; i < 4; i++) {
+            this.paint(g, next.getChild(i), prev.getChild(i),
+                x + Game.subX(i, half), y + Game.subY(i, half), half, dirty);
+        }
+        merge(dirty.subList(start, dirty.size()));
+    }
+
+
+    /*
+     * This replaces every two areas that overlap or share an edge with the
+     * rectangle around both, until no two do. Areas that only meet at a
+     * corner stay apart, the rectangle around them would be mostly pixels
+     * that did not change.
+     */
+    private static void merge(List<Rectangle> areas) {
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < areas.size(); i++) {
+                for (int j = areas.size() - 1; j > i; j--) {
+                    if (touch(areas.get(i), areas.get(j))) {
+                        areas.set(i, areas.get(i).union(areas.remove(j)));
+                        merged = true;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /*
+     * This checks if a and b overlap or share a piece of an edge
+     */
+    private static boolean touch(Rectangle a, Rectangle b) {
+        int across = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+        int down = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+        return across >= 0 && down >= 0 && (across > 0 || down > 0);
+    }
+
+
+    /*
+     * This draws all of block at (x, y) and returns its area
+     */
+    private Rectangle fill(Graphics2D g, ColoredBlock block, int x, int y,
+        int side) {
+        if (block.isLeaf()) {
+            int left = this.pixel(x);
+            int top = this.pixel(y);
+            int right = this.pixel(x + side);
+            int bottom = this.pixel(y + side);
+            g.setColor(block.getColor() == null ? this.getBackground() : block.getColor());
+            g.fillRect(left, top, right - left, bottom - top);
+            g.setColor(Color.BLACK);
+            g.drawLine(left, top, right - 1, top);
+            g.drawLine(left, top, left, bottom - 1);
+        }
+        else {
+            int half = side / 2;
+            for (int i = 0; i < 4; i++) {
+                this.fill(g, block.getChild(i), x + Game.subX(i, half),
+                    y + Game.subY(i, half), half);
+            }
+        }
+        int left = this.pixel(x);
+        int top = this.pixel(y);
+        return new Rectangle(left, top, this.pixel(x + side) - left,
+            this.pixel(y + side) - top);
+    }
+
+
+    /*
+     * This returns the pixel of board coordinate v, the board filling the
+     * image but for its last row and column
+     */
+    private int pixel(int v) {
+        return (int) ((long) v * (this.image.getWidth() - 1) / this.extent);
+    }
+
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(PREF_W, PREF_H);
+    }
+
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (this.drawn != null) {
+            this.fitImage();
+            g.drawImage(this.image, 0, 0, null);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class SquaresTest {
+
+    /*
+     * This checks that a move repaints only the blocks it changed and
+     * leaves the image a full redraw would give
+     */
+    @Test
+    public void redrawsChanges() {
+        Game game = new Game(3, Color.red, 6L);
+        Squares squares = new Squares();
+        IBlock root = game.getRoot();
+        split(game);
+        ColoredBlock before = ColoredBlock.of(root, null);
+        assertEquals(List.of(new Rectangle(0, 0, 500, 500)), squares.draw(before, 8));
+        assertEquals(List.of(), squares.draw(ColoredBlock.of(root, before), 8));
+
+        game.apply(List.of(Move.rotate(1)));
+        ColoredBlock after = ColoredBlock.of(root, before);
+        assertSame(before.getChild(1), after.getChild(1));
+        //The top left quadrant, the board's edge is pixel 499
+        assertEquals(List.of(new Rectangle(0, 0, 499 / 2, 499 / 2)),
+            squares.draw(after, 8));
+        assertSame(after, ColoredBlock.of(root, after));
+        assertEquals(List.of(), squares.draw(after, 8));
+
+        Squares fresh = new Squares();
+        fresh.draw(ColoredBlock.of(root, null), 8);
+        assertImagesEqual(fresh.getImage(), squares.getImage());
+    }
+
+    /*
+     * This checks that changes apart are repainted apart: a swap of two
+     * blocks that only meet at a corner repaints two areas
+     */
+    @Test
+    public void separateAreas() {
+        Game game = new Game(3, Color.red, 6L);
+        Squares squares = new Squares();
+        split(game);
+        ColoredBlock before = ColoredBlock.of(game.getRoot(), null);
+        squares.draw(before, 8);
+
+        game.swap(1, 3);
+        ColoredBlock after = ColoredBlock.of(game.getRoot(), before);
+        int half = 499 / 2;
+        assertEquals(List.of(new Rectangle(0, 0, half, half),
+            new Rectangle(half, half, 499 - half, 499 - half)),
+            squares.draw(after, 8));
+
+        Squares fresh = new Squares();
+        fresh.draw(ColoredBlock.of(game.getRoot(), null), 8);
+        assertImagesEqual(fresh.getImage(), squares.getImage());
+    }
+
+    /*
+     * This checks that swaps and smashes over many moves keep the image
+     * the same as a full redraw
+     */
+    @Test
+    public void manyMoves() {
+        Game game = new Game(4, Color.red, 3L);
+        Squares squares = new Squares();
+        ColoredBlock board = ColoredBlock.of(game.getRoot(), null);
+        squares.draw(board, 16);
+        SplittableRandom rand = new SplittableRandom(2);
+        for (int i = 0; i < 100; i++) {
+            game.apply(List.of(game.snapshot().randomMove(rand)));
+            board = ColoredBlock.of(game.getRoot(), board);
+            squares.draw(board, 16);
+        }
+        Squares fresh = new Squares();
+        fresh.draw(ColoredBlock.of(game.getRoot(), null), 16);
+        assertImagesEqual(fresh.getImage(), squares.getImage());
+    }
+
+    /*
+     * This returns block 1, the top left quadrant, smashing the root and
+     * the quadrant if they are leaves
+     */
+    private static IBlock split(Game game) {
+        if (game.getRoot().isleaf()) {
+            game.apply(List.of(Move.smash(0, 1L)));
+        }
+        if (game.getBlock(1).isleaf()) {
+            game.apply(List.of(Move.smash(1, 1L)));
+        }
+        return game.getBlock(1);
+    }
+
+    private static void assertImagesEqual(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -0,0 +1,703 @@
+import java.awt.Color;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A Game that many threads can play at once. The board is cut into 16
+ * stripes, the 4 x 4 squares of the depth 2 blocks, and every stripe has
+ * its own lock. A move takes the locks of the stripes its blocks cover, in
+ * ascending order, so moves on different stripes run in parallel:
+ *
+ *  - a rotate, smash or swap of blocks at depth 2 or below takes one
+ *    stripe, or two for a swap across stripes
+ *  - a move on a depth 1 block takes the 4 stripes of its quadrant
+ *  - a move on the root takes all 16
+ *
+ * The stripes a move needs follow from where its blocks are, so the
+ * concurrent moves address blocks by a point (x, y) inside them and their
+ * depth; the block at a depth is always the same square of the board. BFS
+ * ids change with every smash anywhere on the board, so the IGame methods,
+ * which use them, take all 16 locks and see one consistent board. They
+ * share the id index of Game (see BlockIndex) and its batches (see
+ * MoveBatch); a concurrent move only marks the index stale, and the next
+ * id lookup builds it again.
+ *
+ * Scores are kept per stripe. A move recounts the cells of the target
+ * color along the board's edge in the stripes it holds, before it lets go
+ * of them, so perimeter_score() adds up 16 numbers and takes no lock; while
+ * other threads make moves it sees every stripe as of its last move. The
+ * largest blob spans stripes, so blob_score() takes all locks, but it only
+ * repaints and rescores the stripes changed since the last call (see
+ * BlobScorer).
+ *
+ * Blocks returned by getRoot() and getBlock() are the live blocks of the
+ * game; read them only while no other thread makes moves.
+ *
+ * @author Daniel Xu
+ */
+public class StripedGame implements IGame {
+
+    static final int STRIPES = 16;
+    private static final int ALL = (1 << STRIPES) - 1;
+
+    private final int max_depth;
+    private final Color target;
+    private final int extent;
+    private final int unitS;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private Block root;
+
+    //Id lookups, used under all locks only
+    private final BlockIndex index = new BlockIndex();
+    private boolean indexStale;
+    //True while a thread holds all locks. Set and cleared under all locks,
+    //so a thread holding any lock reads its latest value.
+    private boolean exclusive;
+
+    //Length of the board's edge of the target color in each stripe
+    private final AtomicIntegerArray edges = new AtomicIntegerArray(STRIPES);
+    //Stripes changed since the last blob_score()
+    private final AtomicInteger blobDirty = new AtomicInteger(ALL);
+    private IBlock[][] grid;
+    private BlobScorer blobs;
+
+    /*
+     * Keeps the index and the scores in step with every smash, rotate and
+     * recolor of a block, made by the thread that holds its stripes
+     */
+    private final BlockListener changes = new BlockListener() {
+        @Override
+        public void blockSmashed(IBlock block) {
+            if (StripedGame.this.indexed()) {
+                StripedGame.this.index.smashed(block);
+            }
+            StripedGame.this.changed(block);
+        }
+
+        @Override
+        public void blockRotated(IBlock block) {
+            if (StripedGame.this.indexed()) {
+                StripedGame.this.index.rotated(block);
+            }
+            StripedGame.this.changed(block);
+        }
+
+        @Override
+        public void blockRecolored(IBlock block) {
+            StripedGame.this.changed(block);
+        }
+    };
+
+    /*
+     * Lets MoveBatch make moves on this game, under all locks
+     */
+    private final MoveBatch.Board batch = new MoveBatch.Board() {
+        @Override
+        public Block block(int id) {
+            return StripedGame.this.find(id);
+        }
+
+        @Override
+        public IBlock root() {
+            return StripedGame.this.root;
+        }
+
+        @Override
+        public int maxDepth() {
+            return StripedGame.this.max_depth;
+        }
+
+        @Override
+        public void swap(int x, int y) {
+            StripedGame.this.swapIds(x, y, StripedGame.this.find(x),
+                StripedGame.this.find(y));
+        }
+    };
+
+    /*
+     * This constructs the game with max_depth and the color that will be
+     * used to count the points, on a random board
+     *
+     * @param maxDepth
+     * @param target
+     */
+    StripedGame(int maxDepth, Color target) {
+        this(maxDepth, target, new SplittableRandom().nextLong());
+    }
+
+    /*
+     * Same as StripedGame(maxDepth, target) on the board of Game(maxDepth,
+     * target, seed)
+     *
+     * @param maxDepth
+     * @param target
+     * @param seed
+     */
+    StripedGame(int maxDepth, Color target, long seed) {
+        this.max_depth = maxDepth;
+        this.target = target;
+        this.extent = Game.extentFor(maxDepth);
+        this.unitS = this.extent >> maxDepth;
+        for (int i = 0; i < STRIPES; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.random_init(seed);
+    }
+
+    @Override
+    public int max_depth() {
+        return this.max_depth;
+    }
+
+    @Override
+    public IBlock random_init() {
+        return this.random_init(new SplittableRandom().nextLong());
+    }
+
+    /*
+     * This starts over on the board Game(max_depth, target, seed) has
+     *
+     * @param seed
+     * @return root
+     */
+    public IBlock random_init(long seed) {
+        Block board = Block.copyOf(
+            new Game(this.max_depth, this.target, seed).getRoot());
+        this.install(board);
+        return board;
+    }
+
+    //============================== Concurrent moves
+
+    /*
+     * This rotates the block at depth that holds the point (x, y)
+     * clockwise
+     *
+     * @param x
+     * @param y
+     * @param depth
+     * @throws IllegalArgumentException if the board has no block there
+     */
+    public void rotate(int x, int y, int depth) {
+        int stripes = this.stripes(x, y, depth);
+        this.lock(stripes);
+        try {
+            this.blockAt(x, y, depth).rotate();
+        }
+        finally {
+            this.unlock(stripes);
+        }
+    }
+
+    /*
+     * This smashes the leaf at depth that holds the point (x, y), with
+     * colors from seed
+     *
+     * @param x
+     * @param y
+     * @param depth
+     * @param seed
+     * @throws IllegalArgumentException if there is no leaf above max_depth
+     *         there
+     */
+    public void smash(int x, int y, int depth, long seed) {
+        int stripes = this.stripes(x, y, depth);
+        this.lock(stripes);
+        try {
+            Block block = this.blockAt(x, y, depth);
+            if (!block.isleaf() || depth >= this.max_depth) {
+                throw new IllegalArgumentException("No leaf to smash at (" + x
+                    + ", " + y + ") depth " + depth);
+            }
+            block.smash(this.max_depth, new SplittableRandom(seed));
+        }
+        finally {
+            this.unlock(stripes);
+        }
+    }
+
+    /*
+     * This swaps the blocks at depth that hold the points (x1, y1) and
+     * (x2, y2)
+     *
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     * @param depth
+     * @throws IllegalArgumentException if depth is 0 or the board has no
+     *         block there
+     */
+    public void swap(int x1, int y1, int x2, int y2, int depth) {
+        if (depth == 0) {
+            throw new IllegalArgumentException("The root cannot be swapped");
+        }
+        int stripes = this.stripes(x1, y1, depth) | this.stripes(x2, y2, depth);
+        this.lock(stripes);
+        try {
+            Block one = this.blockAt(x1, y1, depth);
+            Block two = this.blockAt(x2, y2, depth);
+            if (one != two) {
+                swapBlocks(one, two);
+                this.indexStale = true;
+                this.changed(one);
+                this.changed(two);
+            }
+        }
+        finally {
+            this.unlock(stripes);
+        }
+    }
+
+    /*
+     * This returns the color of the unit cell at (x, y), reading only
+     * its stripe
+     *
+     * @param x
+     * @param y
+     * @return color
+     */
+    public Color colorAt(int x, int y) {
+        int stripes = this.stripes(x, y, 2);
+        this.lock(stripes);
+        try {
+            IBlock block = this.root;
+            while (!block.isleaf()) {
+                block = block.getChild(slot(block, x, y));
+            }
+            return block.getColor();
+        }
+        finally {
+            this.unlock(stripes);
+        }
+    }
+
+    //============================== IGame
+
+    @Override
+    public IBlock getBlock(int pos) {
+        this.lockAll();
+        try {
+            return this.find(pos);
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    @Override
+    public IBlock getRoot() {
+        this.lockAll();
+        try {
+            return this.root;
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    /*
+     * This swaps the blocks with ids x and y if they are at the same depth,
+     * like Game.swap() any other pair is ignored
+     *
+     * @param x
+     * @param y
+     */
+    @Override
+    public void swap(int x, int y) {
+        this.lockAll();
+        try {
+            Block one = this.find(x);
+            Block two = this.find(y);
+            if (one != null && two != null && one != two
+                && one != this.root && one.depth() == two.depth()) {
+                this.swapIds(x, y, one, two);
+            }
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    /*
+     * This applies the batch as one step, as Game.apply() does
+     *
+     * @param moves
+     */
+    @Override
+    public void apply(List<Move> moves) {
+        this.lockAll();
+        try {
+            MoveBatch.apply(this.batch, moves);
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    @Override
+    public IBlock[][] flatten() {
+        this.lockAll();
+        try {
+            int gridSize = 1 << this.max_depth;
+            IBlock[][] grid = new IBlock[gridSize][gridSize];
+            Game.paint(grid, this.root, 0, 0, this.extent, this.unitS);
+            return grid;
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    /*
+     * This adds up the border cells of the target color of every stripe,
+     * corners count twice. It takes no lock.
+     *
+     * @return score
+     */
+    @Override
+    public int perimeter_score() {
+        int length = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            length += this.edges.get(i);
+        }
+        return length / this.unitS;
+    }
+
+    /*
+     * This scores the largest blob, repainting only the stripes changed
+     * since the last call
+     *
+     * @return score
+     */
+    @Override
+    public int blob_score() {
+        this.lockAll();
+        try {
+            int changed = this.blobDirty.getAndSet(0);
+            int quarter = this.extent / 4;
+            //Below depth 2 a stripe is smaller than a cell
+            if (this.grid == null || quarter < this.unitS) {
+                int gridSize = 1 << this.max_depth;
+                this.grid = new IBlock[gridSize][gridSize];
+                Game.paint(this.grid, this.root, 0, 0, this.extent, this.unitS);
+                this.blobs = new BlobScorer(gridSize, this.target);
+                this.blobs.rebuild(this.grid);
+                return this.blobs.largest();
+            }
+            int cells = quarter / this.unitS;
+            for (int i = 0; i < STRIPES; i++) {
+                if ((changed & (1 << i)) != 0) {
+                    int x = i % 4 * quarter;
+                    int y = i / 4 * quarter;
+                    IBlock block = this.cover(x, y);
+                    if (block.isleaf()) {
+                        Game.fill(this.grid, block, x, y, quarter, this.unitS);
+                    }
+                    else {
+                        Game.paint(this.grid, block, x, y, quarter, this.unitS);
+                    }
+                    int row = y / this.unitS;
+                    int col = x / this.unitS;
+                    this.blobs.update(this.grid, row, col, row + cells, col + cells);
+                }
+            }
+            return this.blobs.largest();
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    /*
+     * This copies root into blocks of this game, so no one else holds
+     * them
+     *
+     * @param root
+     * @throws IllegalArgumentException if root is not the (0, 0) square
+     *         of the size this game's stripes were cut for
+     */
+    @Override
+    public void setRoot(IBlock root) {
+        Point topLeft = root.getTopLeft();
+        if (topLeft.getX() != 0 || topLeft.getY() != 0
+            || root.getBotRight().getX() != this.extent) {
+            throw new IllegalArgumentException("The root must span (0, 0) to ("
+                + this.extent + ", " + this.extent + ")");
+        }
+        this.install(Block.copyOf(root));
+    }
+
+    //============================== Helpers
+
+    /*
+     * This returns the stripes covered by the block at depth that holds
+     * (x, y), one bit per stripe
+     *
+     * @param x
+     * @param y
+     * @param depth
+     * @return stripes
+     */
+    int stripes(int x, int y, int depth) {
+        if (x < 0 || y < 0 || x >= this.extent || y >= this.extent
+            || depth < 0 || depth > this.max_depth) {
+            throw new IllegalArgumentException("No block at (" + x + ", " + y
+                + ") depth " + depth);
+        }
+        int quarter = this.extent / 4;
+        int span = depth >= 2 ? 1 : 4 >> depth;
+        int col = x / quarter / span * span;
+        int row = y / quarter / span * span;
+        int stripes = 0;
+        for (int r = row; r < row + span; r++) {
+            for (int c = col; c < col + span; c++) {
+                stripes |= 1 << (r * 4 + c);
+            }
+        }
+        return stripes;
+    }
+
+    private void lock(int stripes) {
+        for (int i = 0; i < STRIPES; i++) {
+            if ((stripes & (1 << i)) != 0) {
+                this.locks[i].lock();
+            }
+        }
+    }
+
+    private void unlock(int stripes) {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            if ((stripes & (1 << i)) != 0) {
+                this.locks[i].unlock();
+            }
+        }
+    }
+
+    private void lockAll() {
+        this.lock(ALL);
+        this.exclusive = true;
+    }
+
+    private void unlockAll() {
+        this.exclusive = false;
+        this.unlock(ALL);
+    }
+
+    /*
+     * This makes board the board of the game, under all locks
+     */
+    private void install(Block board) {
+        this.listenTo(board);
+        this.lockAll();
+        try {
+            this.root = board;
+            this.index.reset(board);
+            this.indexStale = false;
+            this.grid = null;
+            this.blobDirty.set(ALL);
+            this.recount(ALL);
+        }
+        finally {
+            this.unlockAll();
+        }
+    }
+
+    /*
+     * This checks if moves are to patch the index: only under all locks,
+     * and only while it is not stale anyway
+     */
+    private boolean indexed() {
+        if (this.exclusive && !this.indexStale) {
+            return true;
+        }
+        this.indexStale = true;
+        return false;
+    }
+
+    /*
+     * This returns the block with BFS id pos, null if there is none. The
+     * caller holds all locks.
+     */
+    private Block find(int pos) {
+        if (this.indexStale) {
+            this.index.reset(this.root);
+            this.indexStale = false;
+        }
+        try {
+            return (Block) this.index.get(pos);
+        }
+        catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /*
+     * This swaps the blocks one and two with ids x and y, under all locks
+     */
+    private void swapIds(int x, int y, Block one, Block two) {
+        swapBlocks(one, two);
+        this.index.swapped(x, y, one.depth());
+        this.changed(one);
+        this.changed(two);
+    }
+
+    /*
+     * This brings the scores of the stripes of block up to date after it
+     * changed; the caller holds those stripes
+     */
+    private void changed(IBlock block) {
+        Point topLeft = block.getTopLeft();
+        int stripes = this.stripes(topLeft.getX(), topLeft.getY(), block.depth());
+        this.recount(stripes);
+        this.blobDirty.getAndUpdate(dirty -> dirty | stripes);
+    }
+
+    /*
+     * This recounts the edge of the target color of the stripes that lie
+     * on the border of the board
+     */
+    private void recount(int stripes) {
+        int quarter = this.extent / 4;
+        for (int i = 0; i < STRIPES; i++) {
+            int row = i / 4;
+            int col = i % 4;
+            if ((stripes & (1 << i)) == 0
+                || (row != 0 && row != 3 && col != 0 && col != 3)) {
+                continue;
+            }
+            IBlock block = this.cover(col * quarter, row * quarter);
+            int length = 0;
+            if (row == 0) {
+                length += this.edge(block, 0, quarter);
+            }
+            if (col == 3) {
+                length += this.edge(block, 1, quarter);
+            }
+            if (row == 3) {
+                length += this.edge(block, 2, quarter);
+            }
+            if (col == 0) {
+                length += this.edge(block, 3, quarter);
+            }
+            this.edges.set(i, length);
+        }
+    }
+
+    /*
+     * This returns the block of depth at most 2 that covers the stripe with
+     * top left corner (x, y): its depth 2 block, or a larger leaf
+     */
+    private IBlock cover(int x, int y) {
+        IBlock block = this.root;
+        while (block.depth() < 2 && !block.isleaf()) {
+            block = block.getChild(slot(block, x, y));
+        }
+        return block;
+    }
+
+    /*
+     * This returns the length of the target color along side (0 top, 1
+     * right, 2 bottom, 3 left) of block, or of a stripe of size length
+     * inside it when block is a larger leaf
+     */
+    private int edge(IBlock block, int side, int length) {
+        if (block.isleaf()) {
+            return this.target.equals(block.getColor()) ? length : 0;
+        }
+        int half = (block.getBotRight().getX() - block.getTopLeft().getX()) / 2;
+        return this.edge(block.getChild(side), side, half)
+            + this.edge(block.getChild((side + 1) % 4), side, half);
+    }
+
+    /*
+     * This walks down from the root to the block at depth that holds
+     * (x, y); the caller holds its stripes
+     */
+    private Block blockAt(int x, int y, int depth) {
+        IBlock block = this.root;
+        for (int d = 0; d < depth; d++) {
+            if (block.isleaf()) {
+                throw new IllegalArgumentException("No block at (" + x + ", " + y
+                    + ") depth " + depth);
+            }
+            block = block.getChild(slot(block, x, y));
+        }
+        return (Block) block;
+    }
+
+    /*
+     * This returns the slot (children() order) of the sub block of block
+     * that holds (x, y)
+     */
+    private static int slot(IBlock block, int x, int y) {
+        Point topLeft = block.getTopLeft();
+        int half = (block.getBotRight().getX() - topLeft.getX()) / 2;
+        boolean right = x >= topLeft.getX() + half;
+        boolean bottom = y >= topLeft.getY() + half;
+        if (bottom) {
+            return right ? 2 : 3;
+        }
+        return right ? 1 : 0;
+    }
+
+    /*
+     * This swaps two blocks of one depth: each takes the slot and the
+     * square of the other
+     */
+    private static void swapBlocks(Block one, Block two) {
+        Block parentOne = (Block) one.getParent();
+        Block parentTwo = (Block) two.getParent();
+        Point oneTL = one.getTopLeft();
+        Point oneBR = one.getBotRight();
+        Point twoTL = two.getTopLeft();
+        Point twoBR = two.getBotRight();
+        //Found from the points, other slots may be changing under other locks
+        int slotOne = slot(parentOne, oneTL.getX(), oneTL.getY());
+        int slotTwo = slot(parentTwo, twoTL.getX(), twoTL.getY());
+
+        setChild(parentOne, slotOne, two);
+        setChild(parentTwo, slotTwo, one);
+        one.setParent(parentTwo);
+        two.setParent(parentOne);
+
+        one.setTopLeft(twoTL);
+        one.setBotRight(twoBR);
+        two.setTopLeft(oneTL);
+        two.setBotRight(oneBR);
+        one.updateXY(one, twoTL, twoBR);
+        two.updateXY(two, oneTL, oneBR);
+    }
+
+    private static void setChild(Block parent, int slot, Block child) {
+        switch (slot) {
+            case 0:
+                parent.setTopLeftTree(child);
+                break;
+            case 1:
+                parent.setTopRightTree(child);
+                break;
+            case 2:
+                parent.setBotRightTree(child);
+                break;
+            default:
+                parent.setBotLeftTree(child);
+                break;
+        }
+    }
+
+    /*
+     * This makes the game hear of the moves on every block under block
+     */
+    private void listenTo(IBlock block) {
+        ((Block) block).setListener(this.changes);
+        if (!block.isleaf()) {
+            for (int i = 0; i < 4; i++) {
+                this.listenTo(block.getChild(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class StripedGameTest {
+
+    private static final int DEPTH = 5;
+
+    /*
+     * This checks that batches of moves give the board Game gives
+     */
+    @Test
+    public void matchesGame() {
+        StripedGame striped = new StripedGame(4, Color.red, 11L);
+        Game game = new Game(4, Color.red, 11L);
+        assertArrayEquals(Zobrist.hashes(game.getRoot()),
+            Zobrist.hashes(striped.getRoot()));
+        SplittableRandom rand = new SplittableRandom(4);
+        for (int i = 0; i < 200; i++) {
+            Move move = game.snapshot().randomMove(rand);
+            game.apply(List.of(move));
+            striped.apply(List.of(move));
+        }
+        assertArrayEquals(Zobrist.hashes(game.getRoot()),
+            Zobrist.hashes(striped.getRoot()));
+        assertEquals(game.perimeter_score(), striped.perimeter_score());
+        assertEquals(game.blob_score(), striped.blob_score());
+
+        striped.swap(1, 2);
+        game.swap(1, 2);
+        assertArrayEquals(Zobrist.hashes(game.getRoot()),
+            Zobrist.hashes(striped.getRoot()));
+        try {
+            striped.apply(List.of(Move.rotate(0), Move.swap(0, 1)));
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            //expected, and the rotation is undone
+        }
+        assertArrayEquals(Zobrist.hashes(game.getRoot()),
+            Zobrist.hashes(striped.getRoot()));
+    }
+
+    /*
+     * This checks the stripes a block covers
+     */
+    @Test
+    public void stripes() {
+        StripedGame game = new StripedGame(DEPTH, Color.red, 1L);
+        int quarter = Game.extentFor(DEPTH) / 4;
+        assertEquals(0xFFFF, game.stripes(0, 0, 0));
+        assertEquals(0x0033, game.stripes(quarter, quarter, 1));
+        assertEquals(0xCC00, game.stripes(3 * quarter, 2 * quarter, 1));
+        assertEquals(1 << 6, game.stripes(2 * quarter, quarter, 2));
+        assertEquals(1 << 15, game.stripes(4 * quarter - 1, 4 * quarter - 1, DEPTH));
+    }
+
+    /*
+     * This checks that workers on separate stripes leave the board the
+     * same moves made one worker after the other leave
+     */
+    @Test
+    public void parallelStripes() throws Exception {
+        StripedGame parallel = split(new StripedGame(DEPTH, Color.red, 5L));
+        StripedGame serial = split(new StripedGame(DEPTH, Color.red, 5L));
+
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int s = 0; s < StripedGame.STRIPES; s++) {
+                int stripe = s;
+                done.add(workers.submit(() -> play(parallel, stripe, 400)));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        }
+        finally {
+            workers.shutdownNow();
+        }
+        for (int s = 0; s < StripedGame.STRIPES; s++) {
+            play(serial, s, 400);
+        }
+        assertArrayEquals(Zobrist.hashes(serial.getRoot()),
+            Zobrist.hashes(parallel.getRoot()));
+    }
+
+    /*
+     * This checks that moves across stripes and quadrants, made at the
+     * same time, keep a well formed board and running scores and never
+     * deadlock
+     */
+    @Test
+    public void crossStripes() throws Exception {
+        StripedGame game = new StripedGame(DEPTH, Color.red, 8L);
+        int extent = Game.extentFor(DEPTH);
+        game.blob_score();
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                SplittableRandom rand = new SplittableRandom(w);
+                done.add(workers.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        int x = rand.nextInt(extent);
+                        int y = rand.nextInt(extent);
+                        int depth = rand.nextInt(DEPTH + 1);
+                        try {
+                            switch (rand.nextInt(3)) {
+                                case 0:
+                                    game.rotate(x, y, depth);
+                                    break;
+                                case 1:
+                                    game.smash(x, y, depth, rand.nextLong());
+                                    break;
+                                default:
+                                    game.swap(x, y, rand.nextInt(extent),
+                                        rand.nextInt(extent), Math.max(1, depth));
+                            }
+                        }
+                        catch (IllegalArgumentException e) {
+                            //no block there
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        }
+        finally {
+            workers.shutdownNow();
+        }
+        check(game.getRoot(), null, 0);
+        assertEquals(BlobScorer.score(game.flatten(), Color.red), game.blob_score());
+        ArrayGame fresh = new ArrayGame(DEPTH, Color.red, 0L);
+        fresh.setRoot(game.getRoot());
+        assertEquals(fresh.perimeter_score(), game.perimeter_score());
+    }
+
+    /*
+     * This smashes the board down to depth 2 everywhere
+     */
+    private static StripedGame split(StripedGame game) {
+        int quarter = Game.extentFor(DEPTH) / 4;
+        for (int depth = 0; depth < 2; depth++) {
+            for (int x = 0; x < 4 * quarter; x += quarter) {
+                for (int y = 0; y < 4 * quarter; y += quarter) {
+                    try {
+                        game.smash(x, y, depth, x * 31 + y);
+                    }
+                    catch (IllegalArgumentException e) {
+                        //already split
+                    }
+                }
+            }
+        }
+        return game;
+    }
+
+    /*
+     * This makes random moves inside one stripe
+     */
+    private static void play(StripedGame game, int stripe, int moves) {
+        int quarter = Game.extentFor(DEPTH) / 4;
+        int left = stripe % 4 * quarter;
+        int top = stripe / 4 * quarter;
+        SplittableRandom rand = new SplittableRandom(stripe);
+        for (int i = 0; i < moves; i++) {
+            int depth = 2 + rand.nextInt(DEPTH - 1);
+            int x = left + rand.nextInt(quarter);
+            int y = top + rand.nextInt(quarter);
+            try {
+                switch (rand.nextInt(3)) {
+                    case 0:
+                        game.rotate(x, y, depth);
+                        break;
+                    case 1:
+                        game.smash(x, y, depth, rand.nextLong());
+                        break;
+                    default:
+                        game.swap(x, y, left + rand.nextInt(quarter),
+                            top + rand.nextInt(quarter), depth);
+                }
+            }
+            catch (IllegalArgumentException e) {
+                //no block there
+            }
+        }
+    }
+
+    /*
+     * This checks depths, parents and that every block is the square its
+     * slot says
+     */
+    private static void check(IBlock block, IBlock parent, int depth) {
+        assertEquals(depth, block.depth());
+        assertSame(parent, ((Block) block).getParent());
+        if (!block.isleaf()) {
+            Point topLeft = block.getTopLeft();
+            int half = (block.getBotRight().getX() - topLeft.getX()) / 2;
+            for (int i = 0; i < 4; i++) {
+                IBlock sub = block.getChild(i);
+                assertEquals(topLeft.getX() + Game.subX(i, half), sub.getTopLeft().getX());
+                assertEquals(topLeft.getY() + Game.subY(i, half), sub.getTopLeft().getY());
+                assertEquals(half, sub.getBotRight().getX() - sub.getTopLeft().getX());
+                check(sub, block, depth + 1);
+            }
+        }
+    }
+}
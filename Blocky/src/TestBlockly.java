@@ -1,4 +1,8 @@
 import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -6,6 +10,9 @@ import java.util.Scanner;
  */
 public class TestBlockly {
 
+    //Journal of the session, null unless a file is given to main
+    private static MoveJournal.Writer journal;
+
     /**
      * Read the id of two blocks  and perform the swap operation
      * @param in Scanner
@@ -18,7 +25,7 @@ public class TestBlockly {
         int id = in.nextInt();
         System.out.println("ID of second block to swap");
         int id2 = in.nextInt();
-        game.swap(id, id2);
+        play(game, Move.swap(id, id2));
     }
 
 
@@ -32,8 +39,7 @@ public class TestBlockly {
             IGame game, IBlock root) {
         System.out.println("ID of block to rotate");
         int id = in.nextInt();
-        IBlock b = game.getBlock(id);
-        b.rotate();
+        play(game, Move.rotate(id));
     }
 
 
@@ -48,19 +54,47 @@ public class TestBlockly {
         System.out.println("ID of block to smash");
         // in = new Scanner(System.in);
         int id = in.nextInt();
-        IBlock b = game.getBlock(id);
-        b.smash(game.max_depth()); // pass max depth variable
+        // the move carries the seed of its colors, so it can be replayed
+        play(game, Move.smash(id));
+    }
+
+    /**
+     * Make a move, and record it in the journal if there is one
+     * @param game the game instance
+     * @param move the move
+     */
+    private static void play(IGame game, Move move) {
+        try {
+            if (journal != null) {
+                journal.apply(move);
+                journal.flush();
+            }
+            else {
+                game.apply(List.of(move));
+            }
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
  
 
     /**
      * Main method
-     * @param args N/A
+     * @param args optional file to journal the moves of the session to,
+     *        see MoveJournal
+     * @throws IOException if the journal cannot be written
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         //(1) create a new board/Game with the max depth 
         
         IGame board = new Game(3, Color.RED);
+        if (args.length > 0) {
+            journal = MoveJournal.create(Paths.get(args[0]), board, 64);
+        }
        
         //(2) randomly initialize the board
         // and get the root of the quad tree
@@ -0,0 +1,367 @@
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many games without a window, for capacity planning and to compare
+ * strategies. Each game is a {@link Game} on its own seeded board, driven
+ * by a {@link MoveStrategy} for a fixed number of moves, and scored at the
+ * end. The games run on a fixed thread pool or, where the JVM has them, on
+ * virtual threads, and share nothing but the strategy, so the rate grows
+ * with the number of cores.
+ *
+ * The seeds of all games follow from the seed of the tournament, so the
+ * scores of a tournament do not depend on the threads that played it.
+ *
+ * Usage: java Tournament [--games N] [--depth D] [--moves M] [--seed S]
+ *     [--threads T | --virtual] [--strategy random|greedy[:samples]]
+ *     [--score perimeter|blob]
+ *
+ * @author Daniel Xu
+ */
+public final class Tournament {
+
+    //Games per task, so a million games are not a million futures
+    static final int GAMES_PER_TASK = 16;
+
+    private final int games;
+    private final int maxDepth;
+    private final int moves;
+    private final long seed;
+    private final MoveStrategy strategy;
+    private boolean blobScore;
+
+    /*
+     * This constructs a tournament of games games of max depth maxDepth,
+     * each played for up to moves moves by strategy
+     *
+     * @param games
+     * @param maxDepth
+     * @param moves
+     * @param seed
+     * @param strategy
+     */
+    public Tournament(int games, int maxDepth, int moves, long seed,
+        MoveStrategy strategy) {
+        if (games < 1 || maxDepth < 0 || moves < 0) {
+            throw new IllegalArgumentException("Bad tournament: " + games
+                + " games of depth " + maxDepth + " and " + moves + " moves");
+        }
+        this.games = games;
+        this.maxDepth = maxDepth;
+        this.moves = moves;
+        this.seed = seed;
+        this.strategy = strategy;
+    }
+
+    /*
+     * This scores games by blob_score() instead of perimeter_score()
+     *
+     * @param blobScore
+     */
+    public void setBlobScore(boolean blobScore) {
+        this.blobScore = blobScore;
+    }
+
+    /*
+     * This plays the tournament on a pool of threads threads
+     *
+     * @param threads
+     * @return result
+     */
+    public Result run(int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            return this.run(pool);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * This plays the tournament on virtual threads, or on one thread per
+     * core if the JVM has no virtual threads
+     *
+     * @return result
+     */
+    public Result runVirtual() {
+        ExecutorService pool = virtualThreads();
+        if (pool == null) {
+            return this.run(Runtime.getRuntime().availableProcessors());
+        }
+        try {
+            return this.run(pool);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * This plays the tournament on executor
+     *
+     * @param executor
+     * @return result
+     */
+    public Result run(ExecutorService executor) {
+        long[] gameSeeds = new long[this.games];
+        SplittableRandom seeds = new SplittableRandom(this.seed);
+        for (int i = 0; i < this.games; i++) {
+            gameSeeds[i] = seeds.nextLong();
+        }
+        int[] scores = new int[this.games];
+        long[] played = new long[this.games];
+
+        long begin = System.nanoTime();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < this.games; from += GAMES_PER_TASK) {
+            int first = from;
+            int last = Math.min(from + GAMES_PER_TASK, this.games);
+            tasks.add(executor.submit(() -> {
+                for (int i = first; i < last; i++) {
+                    this.play(i, gameSeeds[i], scores, played);
+                }
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tournament interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("A game failed", e.getCause());
+        }
+        long nanos = System.nanoTime() - begin;
+        return new Result(scores, Arrays.stream(played).sum(), nanos);
+    }
+
+    /*
+     * This plays game i and stores its score and number of moves
+     */
+    private void play(int i, long gameSeed, int[] scores, long[] played) {
+        Game game = new Game(this.maxDepth, Color.RED, gameSeed);
+        game.setPublishing(true);
+        SplittableRandom rand = new SplittableRandom(~gameSeed);
+        int count = 0;
+        while (count < this.moves) {
+            Move move = this.strategy.next(game.snapshot(), rand);
+            if (move == null) {
+                break;
+            }
+            game.apply(List.of(move));
+            count++;
+        }
+        scores[i] = this.blobScore ? game.blob_score() : game.perimeter_score();
+        played[i] = count;
+    }
+
+    /*
+     * This checks if the JVM has virtual threads (Java 21 on), without
+     * starting an executor
+     */
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        }
+        catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /*
+     * This returns an executor that starts a virtual thread per task, null
+     * before Java 21. It is looked up by reflection so the code still builds
+     * for older JVMs.
+     */
+    static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The scores of a tournament and how fast it was played
+     */
+    public static final class Result {
+        private final int[] scores;
+        private final int[] sorted;
+        private final long moves;
+        private final long nanos;
+
+        Result(int[] scores, long moves, long nanos) {
+            this.scores = scores;
+            this.sorted = scores.clone();
+            Arrays.sort(this.sorted);
+            this.moves = moves;
+            this.nanos = nanos;
+        }
+
+        /*
+         * This returns the score of every game, in game order
+         *
+         * @return scores
+         */
+        public int[] getScores() {
+            return this.scores.clone();
+        }
+
+        public int games() {
+            return this.scores.length;
+        }
+
+        public long getMoves() {
+            return this.moves;
+        }
+
+        public long getNanos() {
+            return this.nanos;
+        }
+
+        public double mean() {
+            return Arrays.stream(this.scores).average().orElse(0);
+        }
+
+        /*
+         * This returns the score that p percent of the games do not beat
+         *
+         * @param p
+         * @return score
+         */
+        public int percentile(double p) {
+            int i = (int) Math.ceil(p / 100 * this.sorted.length) - 1;
+            return this.sorted[Math.max(0, Math.min(i, this.sorted.length - 1))];
+        }
+
+        public double gamesPerSecond() {
+            return this.nanos == 0 ? 0 : this.scores.length * 1e9 / this.nanos;
+        }
+
+        public double movesPerSecond() {
+            return this.nanos == 0 ? 0 : this.moves * 1e9 / this.nanos;
+        }
+
+        /*
+         * This returns a histogram of the scores in buckets of equal width,
+         * one line per bucket
+         *
+         * @param buckets
+         * @return histogram
+         */
+        public String histogram(int buckets) {
+            int min = this.sorted[0];
+            int max = this.sorted[this.sorted.length - 1];
+            int width = Math.max(1, (max - min + buckets) / buckets);
+            int[] counts = new int[buckets];
+            for (int score : this.sorted) {
+                counts[Math.min(buckets - 1, (score - min) / width)]++;
+            }
+            int most = Arrays.stream(counts).max().orElse(1);
+            StringBuilder out = new StringBuilder();
+            for (int b = 0; b < buckets && min + b * width <= max; b++) {
+                out.append(String.format("%6d-%-6d %8d %s%n", min + b * width,
+                    min + (b + 1) * width - 1, counts[b],
+                    "#".repeat((int) (40L * counts[b] / most))));
+            }
+            return out.toString();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d games, %d moves in %.1f ms: %.0f games/s,"
+                + " %.0f moves/s%nscore min %d p50 %d p90 %d p99 %d max %d"
+                + " mean %.2f%n%s", this.games(), this.moves, this.nanos / 1e6,
+                this.gamesPerSecond(), this.movesPerSecond(), this.sorted[0],
+                this.percentile(50), this.percentile(90), this.percentile(99),
+                this.sorted[this.sorted.length - 1], this.mean(),
+                this.histogram(10));
+        }
+    }
+
+    /**
+     * Runs a tournament from the command line and prints its result
+     * @param args see the class comment
+     */
+    public static void main(String[] args) {
+        int games = 1000;
+        int depth = 5;
+        int moves = 50;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean virtual = false;
+        String strategy = "random";
+        String score = "perimeter";
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--virtual")) {
+                virtual = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                usage("Missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--games":
+                    games = Integer.parseInt(value);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(value);
+                    break;
+                case "--moves":
+                    moves = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--strategy":
+                    strategy = value;
+                    break;
+                case "--score":
+                    score = value;
+                    break;
+                default:
+                    usage("Unknown option " + arg);
+            }
+        }
+        if (!score.equals("perimeter") && !score.equals("blob")) {
+            usage("Unknown score " + score);
+        }
+
+        Tournament tournament = new Tournament(games, depth, moves, seed,
+            MoveStrategy.named(strategy));
+        tournament.setBlobScore(score.equals("blob"));
+        if (virtual && !hasVirtualThreads()) {
+            System.out.println("No virtual threads, using " + threads + " threads");
+            virtual = false;
+        }
+        Result result = virtual ? tournament.runVirtual() : tournament.run(threads);
+        System.out.print(result);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: java Tournament [--games N] [--depth D]"
+            + " [--moves M] [--seed S] [--threads T | --virtual]"
+            + " [--strategy random|greedy[:samples]] [--score perimeter|blob]");
+        System.exit(2);
+    }
+}
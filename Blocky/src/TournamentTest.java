@@ -0,0 +1,65 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class TournamentTest {
+
+    /*
+     * This checks that the scores follow from the seed alone, whatever
+     * the threads, and that every move is counted
+     */
+    @Test
+    public void sameScoresOnAnyThreads() {
+        Tournament tournament = new Tournament(40, 4, 20, 7L, MoveStrategy.RANDOM);
+        Tournament.Result one = tournament.run(1);
+        Tournament.Result many = tournament.run(4);
+        assertArrayEquals(one.getScores(), many.getScores());
+        assertEquals(40, one.games());
+        assertEquals(40 * 20, one.getMoves());
+        assertEquals(one.getScores().length, one.games());
+        assertTrue(one.percentile(0) <= one.percentile(50));
+        assertTrue(one.percentile(50) <= one.percentile(100));
+        assertTrue(one.toString().contains("40 games, 800 moves"));
+
+        Tournament.Result virtual = tournament.runVirtual();
+        assertArrayEquals(one.getScores(), virtual.getScores());
+    }
+
+    /*
+     * This checks that greedy plays the best of the moves it sampled, and
+     * that the blob score is used when set
+     */
+    @Test
+    public void strategiesAndScores() {
+        MoveStrategy greedy = MoveStrategy.named("greedy:8");
+        SplittableRandom boards = new SplittableRandom(3L);
+        for (int i = 0; i < 20; i++) {
+            PersistentBoard board = PersistentBoard.random(4, Color.RED, boards);
+            long seed = boards.nextLong();
+            Move pick = greedy.next(board, new SplittableRandom(seed));
+            int picked = board.apply(pick).perimeterScore();
+            //The same generator draws the same samples
+            SplittableRandom samples = new SplittableRandom(seed);
+            for (int s = 0; s < 8; s++) {
+                Move sample = board.randomMove(samples);
+                assertTrue(picked >= board.apply(sample).perimeterScore());
+            }
+        }
+
+        Tournament idle = new Tournament(20, 4, 0, 3L, MoveStrategy.RANDOM);
+        Tournament played = new Tournament(20, 4, 10, 3L, greedy);
+        assertEquals(20 * 10, played.run(2).getMoves());
+
+        idle.setBlobScore(true);
+        int[] scores = idle.run(2).getScores();
+        long first = new SplittableRandom(3L).nextLong();
+        assertEquals(new Game(4, Color.RED, first).blob_score(), scores[0]);
+    }
+}
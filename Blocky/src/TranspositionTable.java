@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * A fixed size set of board hashes (see {@link PersistentBoard#hash()}) for
+ * search code that wants to skip boards it has already seen. Hashes live in
+ * one open addressed long[]: a lookup probes PROBES slots from the home slot
+ * of the hash, and when they are all taken the home slot is overwritten, so
+ * memory stays bounded and old entries are forgotten first-come. A
+ * forgotten board is only searched again, never missed.
+ *
+ * @author Daniel Xu
+ */
+public class TranspositionTable {
+
+    private static final int PROBES = 4;
+    //Marks an empty slot, a hash equal to it is stored as ZERO_KEY
+    private static final long EMPTY = 0;
+    private static final long ZERO_KEY = 0x9E3779B97F4A7C15L;
+
+    private final long[] keys;
+    private final int mask;
+    private int size;
+    private long hits;
+
+    /*
+     * This constructs a table with room for capacity hashes, rounded up to
+     * a power of two
+     *
+     * @param capacity
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Bad capacity " + capacity);
+        }
+        int slots = Integer.highestOneBit(Math.max(capacity, PROBES) - 1) << 1;
+        this.keys = new long[slots];
+        this.mask = slots - 1;
+    }
+
+    /*
+     * This records hash and returns true if it was already in the table
+     *
+     * @param hash
+     * @return seen before
+     */
+    public boolean seen(long hash) {
+        long key = hash == EMPTY ? ZERO_KEY : hash;
+        int home = (int) (key ^ (key >>> 32)) & this.mask;
+        for (int p = 0; p < PROBES; p++) {
+            int slot = (home + p) & this.mask;
+            if (this.keys[slot] == key) {
+                this.hits++;
+                return true;
+            }
+            if (this.keys[slot] == EMPTY) {
+                this.keys[slot] = key;
+                this.size++;
+                return false;
+            }
+        }
+        this.keys[home] = key;
+        return false;
+    }
+
+    /*
+     * This checks if hash is in the table without recording it
+     *
+     * @param hash
+     * @return boolean
+     */
+    public boolean contains(long hash) {
+        long key = hash == EMPTY ? ZERO_KEY : hash;
+        int home = (int) (key ^ (key >>> 32)) & this.mask;
+        for (int p = 0; p < PROBES; p++) {
+            long k = this.keys[(home + p) & this.mask];
+            if (k == key) {
+                return true;
+            }
+            if (k == EMPTY) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * This returns the number of hashes stored
+     *
+     * @return size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /*
+     * This returns the number of slots, the most hashes the table holds
+     *
+     * @return capacity
+     */
+    public int capacity() {
+        return this.keys.length;
+    }
+
+    /*
+     * This returns how many times seen() found a hash
+     *
+     * @return hits
+     */
+    public long hits() {
+        return this.hits;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY);
+        this.size = 0;
+        this.hits = 0;
+    }
+}
@@ -0,0 +1,137 @@
+import java.awt.Color;
+
+/**
+ * Hashing of Blocky boards, for transposition tables. The hash of a block
+ * only depends on the subtree under it: a leaf hashes its depth and color,
+ * a split block mixes the hashes of its four sub blocks in children()
+ * order. Where a block is on the board is given by the slots on the path to
+ * it, so two boards hash the same when they have the same leaves, depths
+ * and colors in the same places. Since a subtree hashes the same wherever
+ * it is, a tree that keeps the hash of every node re-hashes only the nodes
+ * on the paths to the blocks a move changed, O(depth) per move however
+ * large the moved subtrees are.
+ *
+ * The four rotation hashes of a board are kept in a long[4]: entry r is the
+ * hash the board would have after r more clockwise rotations of the root,
+ * which only moves the four quadrants round. They come from the hashes of
+ * the quadrants in O(1), and the smallest entry is a canonical hash shared
+ * by the four rotations of a board.
+ *
+ * Hashes are splitmix64 mixes, so no key table has to be allocated and the
+ * hashes are the same in every run.
+ *
+ * Despite the name this is not Zobrist hashing, which XORs one random key
+ * per (cell, color) feature of the board. It is a Merkle-style hash: each
+ * node mixes the hashes of its children, in order, which is what lets a
+ * moved subtree keep its hash and a move re-hash only the path above it.
+ *
+ * @author Daniel Xu
+ */
+final class Zobrist {
+
+    //Stands for the color of a leaf without one, no RGB value is this
+    private static final long NO_COLOR = 1L << 32;
+    private static final long SPLIT = 0x5350_4C49_5421L;
+
+    private Zobrist() {
+    }
+
+    /*
+     * This returns the hash of a leaf at depth with color c, which may be
+     * null
+     *
+     * @param depth
+     * @param c
+     * @return hash
+     */
+    static long leaf(int depth, Color c) {
+        long color = c == null ? NO_COLOR : c.getRGB() & 0xFFFFFFFFL;
+        return mix(mix(depth) ^ color);
+    }
+
+    /*
+     * This returns the hash of a split block whose sub blocks, in
+     * children() order, hash to h0 to h3
+     *
+     * @param h0
+     * @param h1
+     * @param h2
+     * @param h3
+     * @return hash
+     */
+    static long node(long h0, long h1, long h2, long h3) {
+        long h = mix(SPLIT ^ h0);
+        h = mix(h ^ h1);
+        h = mix(h ^ h2);
+        return mix(h ^ h3);
+    }
+
+    /*
+     * This returns the four rotation hashes of a split root whose sub
+     * blocks hash to h0 to h3. After r clockwise rotations slot s holds the
+     * sub block that was in slot s - r.
+     *
+     * @param h0
+     * @param h1
+     * @param h2
+     * @param h3
+     * @return hashes
+     */
+    static long[] rotations(long h0, long h1, long h2, long h3) {
+        return new long[] { node(h0, h1, h2, h3), node(h3, h0, h1, h2),
+            node(h2, h3, h0, h1), node(h1, h2, h3, h0) };
+    }
+
+    /*
+     * This returns the hash of the subtree under block
+     *
+     * @param block
+     * @return hash
+     */
+    static long hash(IBlock block) {
+        if (block.isleaf()) {
+            return leaf(block.depth(), block.getColor());
+        }
+        return node(hash(block.getChild(0)), hash(block.getChild(1)),
+            hash(block.getChild(2)), hash(block.getChild(3)));
+    }
+
+    /*
+     * This computes the four rotation hashes of the board under root
+     *
+     * @param root
+     * @return hashes
+     */
+    static long[] hashes(IBlock root) {
+        if (root == null) {
+            return new long[4];
+        }
+        if (root.isleaf()) {
+            long h = hash(root);
+            return new long[] { h, h, h, h };
+        }
+        return rotations(hash(root.getChild(0)), hash(root.getChild(1)),
+            hash(root.getChild(2)), hash(root.getChild(3)));
+    }
+
+    /*
+     * This returns the smallest of the rotation hashes
+     *
+     * @param hashes
+     * @return canonical hash
+     */
+    static long canonical(long[] hashes) {
+        return Math.min(Math.min(hashes[0], hashes[1]),
+            Math.min(hashes[2], hashes[3]));
+    }
+
+    /*
+     * splitmix64 finalizer
+     */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.Test;
+
+
+/**
+ * @author Daniel Xu
+ */
+
+public class ZobristTest {
+
+    /*
+     * This checks that the hashes a board keeps through random moves are
+     * the ones a full pass over its leaves gives, and that Game agrees
+     */
+    @Test
+    public void incrementalHash() {
+        SplittableRandom rand = new SplittableRandom(3);
+        PersistentBoard board = new PersistentGame(4, Color.red, 9L).getBoard();
+        Game game = new Game(4, Color.red);
+        game.setRoot(Block.copyOf(board.getRoot()));
+        game.setPublishing(true);
+        for (int i = 0; i < 500; i++) {
+            Move move = board.randomMove(rand);
+            board = board.apply(move);
+            game.apply(List.of(move));
+            long[] full = Zobrist.hashes(board.getRoot());
+            assertEquals(full[0], board.hash());
+            assertEquals(Zobrist.canonical(full), board.canonicalHash());
+        }
+        assertEquals(board.hash(), game.zobristHash());
+        assertEquals(board, game.snapshot());
+        assertEquals(board.hashCode(), game.snapshot().hashCode());
+    }
+
+    /*
+     * This checks that the four rotations of the root share the canonical
+     * hash while their plain hashes differ, and that undoing moves gives
+     * back the hash of the start
+     */
+    @Test
+    public void canonicalHash() {
+        PersistentBoard board = new PersistentGame(3, Color.red, 4L).getBoard();
+        PersistentBoard rotated = board.rotate(0);
+        assertEquals(Zobrist.hashes(board.getRoot())[1], rotated.hash());
+        assertNotEquals(board.hash(), rotated.hash());
+        assertNotEquals(board, rotated);
+        for (int r = 0; r < 3; r++) {
+            assertEquals(board.canonicalHash(), rotated.canonicalHash());
+            rotated = rotated.rotate(0);
+        }
+        assertEquals(board.hash(), rotated.hash());
+        assertEquals(board, rotated);
+
+        PersistentBoard swapped = board.swap(1, 2).swap(1, 2);
+        assertEquals(board.hash(), swapped.hash());
+        assertNotEquals(board.canonicalHash(),
+            board.smash(board.size() - 1 > 4 ? 4 : 1, 2L).canonicalHash());
+    }
+
+    /*
+     * This checks that blocks are equal, and hash the same, exactly when
+     * their whole subtrees are
+     */
+    @Test
+    public void blockEquality() {
+        IBlock root = new Game(4, Color.red, 5L).getRoot();
+        Block copy = Block.copyOf(root);
+        assertEquals(root, copy);
+        assertEquals(root.hashCode(), copy.hashCode());
+        assertNotEquals(new Game(4, Color.red, 6L).getRoot(), root);
+
+        IBlock leaf = copy;
+        while (!leaf.isleaf()) {
+            leaf = leaf.getChild(2);
+        }
+        ((Block) leaf).setColor(leaf.getColor() == Color.red ? Color.blue : Color.red);
+        assertNotEquals(root, copy);
+        assertNotEquals(root.hashCode(), copy.hashCode());
+    }
+
+    /*
+     * This checks that the table remembers what it saw and stays within
+     * its capacity
+     */
+    @Test
+    public void transpositionTable() {
+        TranspositionTable table = new TranspositionTable(100);
+        assertEquals(128, table.capacity());
+        assertFalse(table.seen(42L));
+        assertTrue(table.seen(42L));
+        assertFalse(table.seen(0L));
+        assertTrue(table.contains(0L));
+        assertEquals(2, table.size());
+        assertEquals(1, table.hits());
+
+        SplittableRandom rand = new SplittableRandom(1);
+        for (int i = 0; i < 10000; i++) {
+            table.seen(rand.nextLong());
+        }
+        assertTrue(table.size() <= table.capacity());
+        table.clear();
+        assertFalse(table.contains(42L));
+    }
+}